@@ -0,0 +1,39 @@
+/**
+ * The boundary of the box that contains the particles. A boundary decides when a particle next
+ * interacts with it, what happens to the particle when it does, and how the distance between two
+ * particles is measured, so that wall handling can be swapped without changing the simulation loop.
+ */
+interface Boundary {
+	/**
+	 * Computes the time until a particle next interacts with the boundary (e.g. hits a wall).
+	 * @param p the particle
+	 * @return the time until the interaction, or infinity if there will be none
+	 */
+	double getBoundaryCollisionTime (Particle p);
+
+	/**
+	 * Updates a particle after it has interacted with the boundary.
+	 * @param now the current time in the simulation
+	 * @param p the particle
+	 */
+	void updateAfterBoundaryCollision (double now, Particle p);
+
+	/**
+	 * Computes the time until two particles collide, taking the boundary into account.
+	 * @param p1 the first particle
+	 * @param p2 the second particle
+	 * @param uniformParticles true if all particles share one radius and mass, selecting the faster kernels
+	 * @param counters the counters to update with how each prediction was resolved, or null
+	 * @return the time until the particles collide, or infinity if they never will
+	 */
+	double getCollisionTime (Particle p1, Particle p2, boolean uniformParticles, CollisionCounters counters);
+
+	/**
+	 * Updates both particles' velocities after a collision between them, taking the boundary into account.
+	 * @param now the current time in the simulation
+	 * @param p1 the first particle
+	 * @param p2 the particle that p1 collided with
+	 * @param uniformParticles true if all particles share one radius and mass, selecting the faster kernels
+	 */
+	void updateAfterCollision (double now, Particle p1, Particle p2, boolean uniformParticles);
+}
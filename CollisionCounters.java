@@ -0,0 +1,10 @@
+/**
+ * Counts how particle-particle collision predictions were resolved, for metrics. Each simulator owns
+ * its own counters and passes them to the collision kernels, which report the outcome of every
+ * prediction; a thread that predicts collisions in parallel should use counters of its own.
+ */
+class CollisionCounters {
+	long _numSeparatingRejections; //Rejected because the particles were moving apart.
+	long _numMissRejections; //Rejected because the closest approach was farther than the contact distance.
+	long _numFullSolves; //Needed the full quadratic solve.
+}
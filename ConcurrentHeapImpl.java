@@ -0,0 +1,84 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A thread-safe Heap backed by a lock-free skiplist. Any number of threads may add() at the same
+ * time, while consumers call removeFirst(). Items that compare as equal are removed in the order
+ * they were added.
+ */
+class ConcurrentHeapImpl<T extends Comparable<? super T>> implements Heap<T> {
+	private final ConcurrentSkipListSet<Node<T>> _storage; //Ordered with the highest priority first.
+	private final AtomicLong _nextSequence;
+	private final AtomicInteger _numElements;
+
+	/**
+	 * Wraps an item with a unique sequence number, so that equal items can coexist in the skiplist.
+	 */
+	private static class Node<T extends Comparable<? super T>> implements Comparable<Node<T>> {
+		final T _item;
+		final long _sequence;
+
+		Node (T item, long sequence) {
+			_item = item;
+			_sequence = sequence;
+		}
+
+		@Override
+		/**
+		 * Orders nodes so that the item with the highest priority comes first, and equal items in the
+		 * order they were added.
+		 */
+		public int compareTo (Node<T> n) {
+			int cmp = n._item.compareTo(_item);
+			if (cmp != 0) {
+				return cmp;
+			}
+			return Long.compare(_sequence, n._sequence);
+		}
+	}
+
+	/**
+	 * Creates a new ConcurrentHeapImpl.
+	 */
+	public ConcurrentHeapImpl () {
+		_storage = new ConcurrentSkipListSet<>();
+		_nextSequence = new AtomicLong();
+		_numElements = new AtomicInteger();
+	}
+
+	/**
+	 * Adds the specified item to the heap. Safe to call from several threads at once.
+	 *
+	 * @param item the item to add
+	 */
+	public void add (T item) {
+		//Counted before inserting, so that a concurrent removeFirst() never takes the count below zero.
+		_numElements.incrementAndGet();
+		_storage.add(new Node<>(item, _nextSequence.getAndIncrement()));
+	}
+
+	/**
+	 * Removes and returns the item with the highest priority.
+	 *
+	 * @return the top of the heap, or null if the heap is empty
+	 */
+	public T removeFirst () {
+		Node<T> first = _storage.pollFirst();
+		if (first == null) {
+			return null;
+		}
+		_numElements.decrementAndGet();
+		return first._item;
+	}
+
+	/**
+	 * Returns the number of elements in the heap. While other threads are adding or removing items,
+	 * this is only a snapshot, and may already count items that are still being added.
+	 *
+	 * @return the number of elements in the heap
+	 */
+	public int size () {
+		return _numElements.get();
+	}
+}
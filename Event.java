@@ -39,19 +39,56 @@ public class Event implements Comparable<Event> {
 		_p2 = null;
 	}
 
+	/**
+	 * Reinitializes this event so that it can be reused for a different collision.
+	 *
+	 * @param timeOfEvent the time when the collision will take place
+	 * @param timeEventCreated the time when the event was first instantiated and added to the queue
+	 * @param p1 the first particle involved in the collision
+	 * @param p2 the second particle involved in the collision, or null for a collision with a wall
+	 */
+	void reset (double timeOfEvent, double timeEventCreated, Particle p1, Particle p2) {
+		_timeOfEvent = timeOfEvent;
+		_timeEventCreated = timeEventCreated;
+		_p1 = p1;
+		_p2 = p2;
+	}
+
 
 	@Override
 	/**
 	 * Compares two Events based on their event times. Since you are implementing a maximum heap,
 	 * this method assumes that the event with the smaller event time should receive higher priority.
+	 * Events with equal times are ordered by the ids of the particles involved (and then by creation
+	 * time), so that the order of tied events never depends on the order they were added to the heap.
 	 */
 	public int compareTo (Event e) {
 		if (_timeOfEvent < e._timeOfEvent) {
 			return +1; //Positive is more priority.
-		} else if (_timeOfEvent == e._timeOfEvent) {
-			return 0;
-		} else {
+		} else if (_timeOfEvent > e._timeOfEvent) {
 			return -1;
 		}
+
+		//Tie-break: lower particle ids first, then the event created earliest.
+		int cmp = Integer.compare(getId(e._p1), getId(_p1));
+		if (cmp != 0) {
+			return cmp;
+		}
+		cmp = Integer.compare(getId(e._p2), getId(_p2));
+		if (cmp != 0) {
+			return cmp;
+		}
+		return Double.compare(e._timeEventCreated, _timeEventCreated);
+	}
+
+	/**
+	 * Returns the id of a particle involved in an event, or -1 if there is no such particle
+	 * (e.g. the second particle of a wall collision).
+	 *
+	 * @param p the particle, possibly null
+	 * @return the particle's id, or -1 if p is null
+	 */
+	private static int getId (Particle p) {
+		return p == null ? -1 : p._id;
 	}
-}
\ No newline at end of file
+}
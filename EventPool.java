@@ -0,0 +1,64 @@
+/**
+ * A free list of Event objects. Events that have been processed or found to be invalid are released
+ * back to the pool and handed out again by obtain(), so that the simulation loop does not allocate a
+ * new Event for every predicted collision.
+ */
+class EventPool {
+	private static final int INITIAL_CAPACITY = 128;
+	private Event[] _free; //Stack of released events, with the most recently released at the end.
+	private int _numFree;
+
+	/**
+	 * Creates a new, empty EventPool.
+	 */
+	public EventPool () {
+		_free = new Event[INITIAL_CAPACITY];
+		_numFree = 0;
+	}
+
+	/**
+	 * Returns an Event for a collision between two particles, reusing a released one if possible.
+	 *
+	 * @param timeOfEvent the time when the collision will take place
+	 * @param timeEventCreated the time when the event was first instantiated and added to the queue
+	 * @param p1 the first particle involved in the collision
+	 * @param p2 the second particle involved in the collision, or null for a collision with a wall
+	 * @return the event
+	 */
+	public Event obtain (double timeOfEvent, double timeEventCreated, Particle p1, Particle p2) {
+		if (_numFree == 0) {
+			return new Event(timeOfEvent, timeEventCreated, p1, p2);
+		}
+		_numFree--;
+		Event event = _free[_numFree];
+		_free[_numFree] = null;
+		event.reset(timeOfEvent, timeEventCreated, p1, p2);
+		return event;
+	}
+
+	/**
+	 * Returns an event to the pool. The caller must not use the event, or keep it in any heap, afterwards.
+	 *
+	 * @param event the event to release
+	 */
+	public void release (Event event) {
+		if (_numFree == _free.length) {
+			Event[] array = new Event[_free.length * 2];
+			System.arraycopy(_free, 0, array, 0, _numFree);
+			_free = array;
+		}
+		event._p1 = null;
+		event._p2 = null;
+		_free[_numFree] = event;
+		_numFree++;
+	}
+
+	/**
+	 * Returns the number of released events available for reuse.
+	 *
+	 * @return the number of events in the pool
+	 */
+	public int size () {
+		return _numFree;
+	}
+}
@@ -0,0 +1,133 @@
+import java.util.*;
+import java.io.*;
+
+/**
+ * Records the order in which a simulation processes its events, so that two runs can be compared.
+ * Each processed event is written as one line containing its index, a running hash of every event
+ * processed so far, the event time and the names of the particles involved. Two runs diverge at
+ * the first line whose running hash differs.
+ */
+public class EventTrace {
+	private final List<String> _lines;
+	private long _hash;
+
+	/**
+	 * Creates a new, empty EventTrace.
+	 */
+	public EventTrace () {
+		_lines = new ArrayList<>();
+		_hash = 17;
+	}
+
+	/**
+	 * Records a processed event and folds it into the running hash.
+	 *
+	 * @param event the event that was just processed
+	 */
+	public void record (Event event) {
+		long h = Double.doubleToLongBits(event._timeOfEvent);
+		h = 31 * h + event._p1._id;
+		h = 31 * h + (event._p2 == null ? -1 : event._p2._id);
+		_hash = 31 * _hash + (h ^ (h >>> 32));
+
+		_lines.add(_lines.size() + " " + Long.toHexString(_hash) + " " + event._timeOfEvent + " " +
+			   event._p1._name + " " + (event._p2 == null ? "wall" : event._p2._name));
+	}
+
+	/**
+	 * Returns the number of events recorded so far.
+	 *
+	 * @return the number of recorded events
+	 */
+	public int size () {
+		return _lines.size();
+	}
+
+	/**
+	 * Returns the recorded lines, one per processed event.
+	 *
+	 * @return the recorded lines
+	 */
+	public List<String> getLines () {
+		return _lines;
+	}
+
+	/**
+	 * Writes the trace to a file, one event per line.
+	 *
+	 * @param filename the name of the file to write
+	 */
+	public void write (String filename) throws IOException {
+		try (PrintWriter out = new PrintWriter(new FileWriter(filename))) {
+			for (String line : _lines) {
+				out.println(line);
+			}
+		}
+	}
+
+	/**
+	 * Reads a trace previously written by write().
+	 *
+	 * @param filename the name of the file to read
+	 * @return the lines of the trace
+	 */
+	public static List<String> read (String filename) throws IOException {
+		List<String> lines = new ArrayList<>();
+		try (BufferedReader in = new BufferedReader(new FileReader(filename))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				lines.add(line);
+			}
+		}
+		return lines;
+	}
+
+	/**
+	 * Finds the first event at which two traces diverge.
+	 *
+	 * @param a the lines of the first trace
+	 * @param b the lines of the second trace
+	 * @return the index of the first diverging event, or -1 if the traces are identical
+	 */
+	public static int firstDivergence (List<String> a, List<String> b) {
+		int n = Math.min(a.size(), b.size());
+		for (int i = 0; i < n; i++) {
+			if (!getHash(a.get(i)).equals(getHash(b.get(i)))) {
+				return i;
+			}
+		}
+		return a.size() == b.size() ? -1 : n;
+	}
+
+	/**
+	 * Returns the running hash field of a trace line.
+	 *
+	 * @param line a line of a trace
+	 * @return the running hash stored in that line
+	 */
+	private static String getHash (String line) {
+		return line.split(" ")[1];
+	}
+
+	/**
+	 * Compares two trace files and reports the first diverging event.
+	 */
+	public static void main (String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: java EventTrace <trace1> <trace2>");
+			System.exit(1);
+		}
+
+		List<String> a = read(args[0]);
+		List<String> b = read(args[1]);
+		int i = firstDivergence(a, b);
+		if (i < 0) {
+			System.out.println("Traces are identical (" + a.size() + " events)");
+			return;
+		}
+		System.out.println("Traces diverge at event " + i);
+		System.out.println("  " + args[0] + ": " + (i < a.size() ? a.get(i) : "<end of trace>"));
+		System.out.println("  " + args[1] + ": " + (i < b.size() ? b.get(i) : "<end of trace>"));
+		System.exit(2);
+	}
+}
@@ -6,7 +6,9 @@ import java.util.*;
  */
 interface Heap<T extends Comparable<? super T>> { //This means that type T must implement Comparable.
 	/**
-	 * Adds the specified item to the heap.
+	 * Adds the specified item to the heap. The heap takes ownership of the item: an implementation
+	 * may move it out of memory and later return an equal copy from removeFirst(), so the caller
+	 * should not use the item after adding it.
 	 * This operation must run in logarithmic time <em>O</em>(log <em>n</em>), where <em>n</em>
 	 * is the number of items currently stored in the heap.
 	 * @param item the item to add
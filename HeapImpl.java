@@ -4,7 +4,7 @@
  */
 class HeapImpl<T extends Comparable<? super T>> implements Heap<T> {
 	private static final int INITIAL_CAPACITY = 128;
-	public T[] _storage; //Ordered array with highest priority at the end.
+	private T[] _storage; //Array-backed binary tree with the highest priority element at index 0.
 	private int _numElements;
 
 	@SuppressWarnings("unchecked") //This removes the errors for unchecked casting.
@@ -154,13 +154,12 @@ class HeapImpl<T extends Comparable<? super T>> implements Heap<T> {
 	
 	@SuppressWarnings("unchecked")
 	/**
-	 * Creates a new array that has INITIAL_CAPACITY more elements than the current _storage and copies over all the values. 
+	 * Creates a new array that is twice as large as the current _storage and copies over all the values.
+	 * Growing geometrically keeps the total copying linear in the number of adds.
 	 */
 	private  void increaseStorage(){
-		T[] array = (T[]) new Comparable[_numElements + INITIAL_CAPACITY];
-		for(int i = 0; i < _numElements; i++){
-			array[i] = _storage[i];
-		}
+		T[] array = (T[]) new Comparable[Math.max(2 * _storage.length, INITIAL_CAPACITY)];
+		System.arraycopy(_storage, 0, array, 0, _numElements);
 		_storage = array;
 	}
 }
@@ -1,6 +1,8 @@
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.*;
 import java.util.*;
+import java.io.*;
+import java.util.concurrent.*;
 
 public class HeapTester {
 	private void permute (int[] array) {
@@ -33,4 +35,146 @@ public class HeapTester {
 		}
 		assertEquals(0, heap.size());
 	}
+
+	@Test
+	public void testConcurrentShuffled (){
+		final int N = 1000;
+		final int[] numbers = new int[N];
+		for (int i = 0; i < N; i++) {
+			numbers[i] = i;
+		}
+
+		permute(numbers);
+		final ConcurrentHeapImpl<Integer> heap = new ConcurrentHeapImpl<Integer>();
+		for (int i = 0; i < N; i++) {
+			heap.add(numbers[i]);
+		}
+
+		assertEquals(N, heap.size());
+		for (int i = N-1; i >= 0; i--) {
+			assertEquals((Integer) i, heap.removeFirst());
+		}
+		assertEquals(0, heap.size());
+		assertNull(heap.removeFirst());
+	}
+
+	@Test
+	public void testConcurrentProducersStress () throws Exception {
+		final int THREADS = 8;
+		final int N = 20000; //Items per thread; duplicates across threads are intended.
+		final ConcurrentHeapImpl<Integer> heap = new ConcurrentHeapImpl<Integer>();
+		final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		final CountDownLatch start = new CountDownLatch(1);
+		final java.util.List<Future<?>> producers = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			producers.add(executor.submit(() -> {
+				final int[] numbers = new int[N];
+				for (int i = 0; i < N; i++) {
+					numbers[i] = i;
+				}
+				permute(numbers);
+				start.await();
+				for (int i = 0; i < N; i++) {
+					heap.add(numbers[i]);
+				}
+				return null;
+			}));
+		}
+
+		//Consume concurrently with the producers; nothing may be lost or duplicated. The loop gives up
+		//once the producers are done and the heap is empty, so a lost item fails the test below.
+		final int[] counts = new int[N];
+		start.countDown();
+		assertTimeoutPreemptively(java.time.Duration.ofSeconds(60), () -> {
+			int removed = 0;
+			while (removed < THREADS * N) {
+				Integer item = heap.removeFirst();
+				if (item != null) {
+					counts[item]++;
+					removed++;
+				} else if (producers.stream().allMatch(Future::isDone) && heap.size() == 0) {
+					break;
+				}
+			}
+		});
+		for (Future<?> producer : producers) {
+			producer.get();
+		}
+		executor.shutdown();
+
+		assertEquals(0, heap.size());
+		for (int i = 0; i < N; i++) {
+			assertEquals(THREADS, counts[i]);
+		}
+	}
+
+	@Test
+	public void testConcurrentProducersOrder () throws Exception {
+		final int THREADS = 8;
+		final int N = 10000;
+		final ConcurrentHeapImpl<Integer> heap = new ConcurrentHeapImpl<Integer>();
+		final Thread[] producers = new Thread[THREADS];
+		for (int t = 0; t < THREADS; t++) {
+			final int offset = t;
+			producers[t] = new Thread(() -> {
+				for (int i = offset; i < THREADS * N; i += THREADS) {
+					heap.add(i);
+				}
+			});
+			producers[t].start();
+		}
+		for (Thread producer : producers) {
+			producer.join();
+		}
+
+		assertEquals(THREADS * N, heap.size());
+		for (int i = THREADS * N - 1; i >= 0; i--) {
+			assertEquals((Integer) i, heap.removeFirst());
+		}
+	}
+
+	@Test
+	public void testSpillingHeapMatchesHeapImpl (){
+		final Random random = new Random(0);
+		final java.util.List<Particle> particles = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			Particle p = new Particle("p" + i, 0, 0, 0, 0, 1);
+			p._id = i;
+			particles.add(p);
+		}
+
+		final EventPool pool = new EventPool();
+		final SpillingHeap spilling = new SpillingHeap(particles, pool, 50, new File(System.getProperty("java.io.tmpdir")));
+		final HeapImpl<Event> reference = new HeapImpl<Event>();
+		spilling.add(new Event(500, 0)); //An event without particles is never spilled.
+		reference.add(new Event(500, 0));
+
+		//Interleave adds and removes, as the simulation loop does.
+		for (int round = 0; round < 200; round++) {
+			for (int i = 0; i < 10; i++) {
+				double time = round + random.nextInt(1000);
+				Particle p1 = particles.get(random.nextInt(20));
+				Particle p2 = random.nextBoolean() ? null : particles.get(random.nextInt(20));
+				spilling.add(new Event(time, round, p1, p2));
+				reference.add(new Event(time, round, p1, p2));
+			}
+			for (int i = 0; i < 5; i++) {
+				assertEventEquals(reference.removeFirst(), spilling.removeFirst());
+			}
+			assertEquals(reference.size(), spilling.size());
+			assertTrue(spilling.sizeInMemory() <= 50 + 1 + 33);
+		}
+		assertTrue(spilling.getNumRunFiles() > 0);
+		while (reference.size() > 0) {
+			assertEventEquals(reference.removeFirst(), spilling.removeFirst());
+		}
+		assertEquals(0, spilling.size());
+	}
+
+	private void assertEventEquals (Event expected, Event actual) {
+		assertEquals(expected._timeOfEvent, actual._timeOfEvent);
+		assertEquals(expected._timeEventCreated, actual._timeEventCreated);
+		assertSame(expected._p1, actual._p1);
+		assertSame(expected._p2, actual._p2);
+	}
 }
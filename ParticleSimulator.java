@@ -6,29 +6,56 @@ import java.io.*;
 
 public class ParticleSimulator extends JPanel {
 	private Heap<Event> _events;
+	private EventPool _pool; //Recycles events once they have been processed or found invalid.
 	private java.util.List<Particle> _particles;
 	private double _duration;
 	private int _width;
+	private int _height;
+	private Boundary _boundary; //How particles interact with the edges of the box.
+	private EventTrace _trace; //Records processed events when replay recording is enabled; null otherwise.
+	private boolean _uniformParticles; //True if all particles share one radius and mass, selecting the faster collision kernels.
+	private SimulationCache _cache; //Records seed predictions and event history for incremental runs; null otherwise.
+	private int _numEventsProcessed;
+	private int _numEventsInvalid;
+	private int _peakQueueSize;
+	private CollisionCounters _collisionCounters; //How this simulation's collision predictions were resolved.
 
 	/**
 	 * @param filename the name of the file to parse containing the particles
 	 */
 	public ParticleSimulator (String filename) throws IOException {
 		_events = new HeapImpl<>();
+		_pool = new EventPool();
+		_collisionCounters = new CollisionCounters();
 
 		// Parse the specified file and load all the particles.
+		// The header is either "width duration" for a square box, or "width height duration" on one line.
 		Scanner s = new Scanner(new File(filename));
 		_width = s.nextInt();
-		_duration = s.nextDouble();
-		s.nextLine();
+		String[] header = s.nextLine().trim().split("\\s+");
+		if (header.length >= 2) {
+			_height = Integer.parseInt(header[0]);
+			_duration = Double.parseDouble(header[1]);
+		} else {
+			_height = _width;
+			if (header[0].isEmpty()) {
+				_duration = s.nextDouble();
+				s.nextLine();
+			} else {
+				_duration = Double.parseDouble(header[0]);
+			}
+		}
+		_boundary = new ReflectiveBoundary(_width, _height);
 		_particles = new ArrayList<>();
 		while (s.hasNext()) {
 			String line = s.nextLine();
 			Particle particle = Particle.build(line);
+			particle._id = _particles.size();
 			_particles.add(particle);
 		}
+		_uniformParticles = hasUniformParticles(_particles);
 
-		setPreferredSize(new Dimension(_width, _width));
+		setPreferredSize(new Dimension(_width, _height));
 	}
 
 	@Override
@@ -37,12 +64,153 @@ public class ParticleSimulator extends JPanel {
 	 * DO NOT MODIFY THIS METHOD
 	 */
         public void paintComponent (Graphics g) {
-		g.clearRect(0, 0, _width, _width);
+		g.clearRect(0, 0, _width, _height);
 		for (Particle p : _particles) {
 			p.draw(g);
 		}
 	}
 
+	/**
+	 * Enables recording of the order in which events are processed.
+	 *
+	 * @param trace the trace to record processed events into
+	 */
+	public void setEventTrace (EventTrace trace) {
+		_trace = trace;
+	}
+
+	/**
+	 * Sets how particles interact with the edges of the box. Reflective walls are used by default.
+	 * Must be called before the simulation starts.
+	 *
+	 * @param boundary the boundary to use
+	 */
+	public void setBoundary (Boundary boundary) {
+		_boundary = boundary;
+	}
+
+	/**
+	 * Caps the number of events kept in memory. Far-future events beyond the cap are spilled to
+	 * sorted run files in the given directory and read back as the simulation approaches them.
+	 * Must be called before the simulation starts.
+	 *
+	 * @param maxInMemory the maximum number of events to keep in memory
+	 * @param directory the directory to write run files to
+	 */
+	public void setMaxEventsInMemory (int maxInMemory, File directory) {
+		_events = new SpillingHeap(_particles, _pool, maxInMemory, directory);
+	}
+
+	/**
+	 * Enables recording of the seed predictions and event history of a full run, so that a later
+	 * run with a few edited particles can be computed incrementally.
+	 *
+	 * @param cache the cache to record into
+	 */
+	public void setSimulationCache (SimulationCache cache) {
+		_cache = cache;
+	}
+
+	/**
+	 * Tests whether all the particles have the same radius and mass.
+	 *
+	 * @param particles the particles to check
+	 * @return true if the particles all have the same radius and mass
+	 */
+	private static boolean hasUniformParticles (java.util.List<Particle> particles) {
+		for (Particle p : particles) {
+			if (p.getRadius() != particles.get(0).getRadius() || p.getMass() != particles.get(0).getMass()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Computes the time until two particles collide, using the boundary's notion of distance and the
+	 * collision kernel selected when the particles were loaded.
+	 *
+	 * @param p1 the first particle
+	 * @param p2 the second particle
+	 * @return the time until the particles collide, or infinity if they never will
+	 */
+	private double getCollisionTime (Particle p1, Particle p2) {
+		return _boundary.getCollisionTime(p1, p2, _uniformParticles, _collisionCounters);
+	}
+
+	/**
+	 * Returns the number of valid events processed by the simulation loop so far.
+	 *
+	 * @return the number of processed events
+	 */
+	public int getNumEventsProcessed () {
+		return _numEventsProcessed;
+	}
+
+	/**
+	 * Returns the number of events that the simulation loop discarded because they were no longer valid.
+	 *
+	 * @return the number of invalid events
+	 */
+	public int getNumEventsInvalid () {
+		return _numEventsInvalid;
+	}
+
+	/**
+	 * Returns the largest number of events that were in the queue at once.
+	 *
+	 * @return the peak size of the event queue
+	 */
+	public int getPeakQueueSize () {
+		return _peakQueueSize;
+	}
+
+	/**
+	 * Returns the number of collision predictions rejected because the particles were moving apart.
+	 *
+	 * @return the number of rejected predictions
+	 */
+	public long getNumSeparatingRejections () {
+		return _collisionCounters._numSeparatingRejections;
+	}
+
+	/**
+	 * Returns the number of collision predictions rejected because the particles' closest approach
+	 * was farther than the contact distance.
+	 *
+	 * @return the number of rejected predictions
+	 */
+	public long getNumMissRejections () {
+		return _collisionCounters._numMissRejections;
+	}
+
+	/**
+	 * Returns the number of collision predictions that needed the full quadratic solve.
+	 *
+	 * @return the number of full solves
+	 */
+	public long getNumFullSolves () {
+		return _collisionCounters._numFullSolves;
+	}
+
+	/**
+	 * Returns the number of particles being simulated.
+	 *
+	 * @return the number of particles
+	 */
+	public int getNumParticles () {
+		return _particles.size();
+	}
+
+	/**
+	 * Returns the particles being simulated, indexed by id.
+	 *
+	 * @return the particles
+	 */
+	java.util.List<Particle> getParticles () {
+		return _particles;
+	}
+
 	// Helper class to signify the final event of the simulation.
 	private class TerminationEvent extends Event {
 		TerminationEvent (double timeOfEvent) {
@@ -64,73 +232,155 @@ public class ParticleSimulator extends JPanel {
 	 * Executes simulation.
 	 */
 	private void simulate (boolean show) {
-		double lastTime = 0;
+		simulateEvents(show);
+		printState();
+	}
+
+	/**
+	 * Executes simulation without printing the final state, e.g. for benchmarking.
+	 */
+	void simulateEvents (boolean show) {
+		if (_cache != null) {
+			_cache.recordInitialState(_width, _height, _boundary, _particles);
+		}
 
 		// Create initial events, i.e., all the possible
 		// collisions between all the particles and each other,
 		// and all the particles and the walls.
 		enqueueInitialEvents();
+		runEvents(show, 0);
+	}
+
+	/**
+	 * Executes simulation incrementally, reusing the results of a previous run in which some particles
+	 * had a different initial state. Events of the previous run are replayed up to the first event that
+	 * the edited particles could affect; only the rest of the simulation is recomputed. The result is
+	 * the same as that of a full run of the edited input.
+	 *
+	 * @param baseline the cache recorded during the previous run
+	 */
+	private void resimulate (boolean show, SimulationCache baseline) {
+		resimulateEvents(show, baseline);
+		printState();
+	}
+
+	/**
+	 * Executes simulation incrementally without printing the final state.
+	 *
+	 * @param baseline the cache recorded during the previous run
+	 */
+	void resimulateEvents (boolean show, SimulationCache baseline) {
+		double lastTime = replayCachedHistory(baseline);
+		runEvents(show, lastTime);
+	}
+
+	/**
+	 * Runs the simulation loop on the events currently in the queue.
+	 *
+	 * @param lastTime the simulation time at which the particles' positions currently are
+	 */
+	private void runEvents (boolean show, double lastTime) {
 		_events.add(new TerminationEvent(_duration));
 
-		//Simulation loop. Runs until _duration is over or there are no future collisions.
-		while (_events.size() > 0) {
-			Event event = _events.removeFirst();
-			double delta = event._timeOfEvent - lastTime;
+		try {
+			//Simulation loop. Runs until _duration is over or there are no future collisions.
+			while (_events.size() > 0) {
+				if (_events.size() > _peakQueueSize) {
+					_peakQueueSize = _events.size();
+				}
+				Event event = _events.removeFirst();
+				double delta = event._timeOfEvent - lastTime;
 
-			if (event instanceof TerminationEvent) {
-				updateAllParticles(delta);
-				break;
-			}
+				if (event instanceof TerminationEvent) {
+					updateAllParticles(delta);
+					break;
+				}
 
-			//Check if event still valid; if not, then skip this event
-			if (isNotValidEvent(event)) {
-				continue;
-			}
+				//Check if event still valid; if not, then skip this event
+				if (isNotValidEvent(event)) {
+					_numEventsInvalid++;
+					_pool.release(event);
+					continue;
+				}
+				_numEventsProcessed++;
 
-			// Since the event is valid, then pause the simulation for the right
-			// amount of time, and then update the screen.
-			if (show) {
-				try {
-					Thread.sleep((long) delta * 100);
-				} catch (InterruptedException ie) {}
-			}
+				if (_trace != null) {
+					_trace.record(event);
+				}
+
+				// Since the event is valid, then pause the simulation for the right
+				// amount of time, and then update the screen.
+				if (show) {
+					try {
+						Thread.sleep((long) delta * 100);
+					} catch (InterruptedException ie) {}
+				}
 
-			// Update positions of all particles
-			updateAllParticles(delta);
+				// Update positions of all particles
+				updateAllParticles(delta);
 			
-			// Update the velocity of the particle(s) involved in the collision
-			// (either for a particle-wall collision or a particle-particle collision).
-			// You should call the Particle.updateAfterCollision method at some point.
-			if(event._p2 != null) {
-				event._p1.updateAfterCollision(event._timeOfEvent, event._p2);
-			}
-			else {
-				event._p1.updateAfterWallCollision(event._timeOfEvent, _width, _width);
-			}
+				// Update the velocity of the particle(s) involved in the collision
+				// (either for a particle-wall collision or a particle-particle collision).
+				// You should call the Particle.updateAfterCollision method at some point.
+				if(event._p2 != null) {
+					_boundary.updateAfterCollision(event._timeOfEvent, event._p1, event._p2, _uniformParticles);
+				}
+				else {
+					_boundary.updateAfterBoundaryCollision(event._timeOfEvent, event._p1);
+				}
 
-			//Check for collisions with other particles
-			enqueueParticleCollisionsAfterCollision(event);
+				//Check for collisions with other particles
+				enqueueParticleCollisionsAfterCollision(event);
 
-			//Check for collisions with walls
-			enqueueParticleWallCollisions(event);
+				//Check for collisions with walls
+				enqueueParticleWallCollisions(event);
 
-			// Update the time of our simulation
-			lastTime = event._timeOfEvent;
+				if (_cache != null) {
+					_cache.recordProcessedEvent(event);
+				}
+
+				// Update the time of our simulation
+				lastTime = event._timeOfEvent;
+				_pool.release(event);
 
-			// Redraw the screen
-			if (show) {
-				repaint();
+				// Redraw the screen
+				if (show) {
+					repaint();
+				}
+			}
+		} finally {
+			//Removes any spilled run files, even if the simulation failed part way.
+			if (_events instanceof SpillingHeap) {
+				((SpillingHeap) _events).close();
 			}
 		}
+	}
 
-		// Print out the final state of the simulation
-		System.out.println(_width);
-		System.out.println(_duration);
+	/**
+	 * Prints out the final state of the simulation.
+	 */
+	private void printState () {
+		for (String line : getHeaderLines()) {
+			System.out.println(line);
+		}
 		for (Particle p : _particles) {
 			System.out.println(p);
 		}
 	}
 
+	/**
+	 * Returns the header of the printed state: the width and duration on separate lines for a square
+	 * box, or "width height duration" on one line otherwise, as in the input file.
+	 *
+	 * @return the header lines
+	 */
+	private java.util.List<String> getHeaderLines () {
+		if (_height == _width) {
+			return Arrays.asList(String.valueOf(_width), String.valueOf(_duration));
+		}
+		return Arrays.asList(_width + " " + _height + " " + _duration);
+	}
+
 
 	/**
 	 * Adds the initial collisions predicted for all the particles at the initial time to the heap.
@@ -138,16 +388,319 @@ public class ParticleSimulator extends JPanel {
 	private void enqueueInitialEvents () {
 		for(int i = 0; i < _particles.size(); i++) {
 			for(int j = i + 1; j < _particles.size(); j++) {
-				double collisionTime = _particles.get(i).getCollisionTime(_particles.get(j));
+				double collisionTime = getCollisionTime(_particles.get(i), _particles.get(j));
 				if(collisionTime < Double.POSITIVE_INFINITY) {
-					_events.add(new Event(collisionTime, 0.0, _particles.get(i), _particles.get(j)));
+					enqueueSeedEvent(_pool.obtain(collisionTime, 0.0, _particles.get(i), _particles.get(j)));
 				}
 			}
-			double wallCollisionTime = _particles.get(i).getWallCollisionTime(_width, _width);
+			double wallCollisionTime = _boundary.getBoundaryCollisionTime(_particles.get(i));
 			if(wallCollisionTime < Double.POSITIVE_INFINITY){
-				_events.add(new Event(wallCollisionTime, 0.0, _particles.get(i)));
+				enqueueSeedEvent(_pool.obtain(wallCollisionTime, 0.0, _particles.get(i), null));
+			}
+		}
+	}
+
+	/**
+	 * Adds an initial event to the heap, recording it in the simulation cache if one is set.
+	 *
+	 * @param event the predicted event
+	 */
+	private void enqueueSeedEvent (Event event) {
+		//Recorded first, since the heap owns the event once it is added.
+		if (_cache != null) {
+			_cache.recordSeedEvent(event);
+		}
+		_events.add(event);
+	}
+
+	/**
+	 * Replays the history of a cached run up to the first event that the edited particles could
+	 * affect, and then seeds the heap with the predictions that a full run of the edited input would
+	 * hold at that time, so that the rest of the run proceeds as a full run would. Seed predictions
+	 * between particles that were neither edited nor involved in any replayed event are reused from
+	 * the cache; every other prediction is made at the time of the particle's last replayed event.
+	 *
+	 * Boundary events of the edited particles are replayed in between the cached events. Since they
+	 * split the cached time steps, positions may round differently than in the cached run from then
+	 * on, so the time of each later cached event is checked against a prediction made from the
+	 * replayed positions, and the replay stops at the first mismatch. (Predictions that never fired in
+	 * the cached run cannot be checked this way; they could only change the outcome if they came within
+	 * rounding error of a simultaneous event or of a grazing contact.)
+	 *
+	 * @param cache the cache recorded during the previous run
+	 * @return the simulation time at which the replay stopped
+	 */
+	private double replayCachedHistory (SimulationCache cache) {
+		boolean[] edited = cache.findEditedParticles(_width, _height, _boundary, _particles);
+		double[][] initialStates = getParticleStates();
+
+		// Predictions involving the edited particles, used to detect when they first interact with the
+		// rest of the particles.
+		HeapImpl<Event> editedEvents = new HeapImpl<>();
+		for (int i = 0; i < _particles.size(); i++) {
+			if (!edited[i]) {
+				continue;
+			}
+			for (int j = 0; j < _particles.size(); j++) {
+				if (j != i && !(edited[j] && j < i)) {
+					//Same orientation as the initial events of a full run.
+					enqueuePrediction(editedEvents, _particles.get(Math.min(i, j)), _particles.get(Math.max(i, j)), 0);
+				}
+			}
+			enqueuePrediction(editedEvents, _particles.get(i), null, 0);
+		}
+
+		// The prediction behind each cached event was made by its first particle, at that particle's
+		// previous event (or while seeding). Link each cached event to the ones predicted right after it.
+		int numCached = cache._history.size();
+		int[] firstPredicted = new int[numCached];
+		int[] nextPredicted = new int[numCached];
+		int[] lastCached = new int[_particles.size()];
+		Arrays.fill(firstPredicted, -1);
+		Arrays.fill(lastCached, -1);
+		for (int k = 0; k < numCached; k++) {
+			double[] entry = cache._history.get(k);
+			int predictor = lastCached[(int) entry[1]];
+			if (predictor >= 0) {
+				nextPredicted[k] = firstPredicted[predictor];
+				firstPredicted[predictor] = k;
+			}
+			lastCached[(int) entry[1]] = k;
+			if (entry[2] >= 0) {
+				lastCached[(int) entry[2]] = k;
+			}
+		}
+		double[] replayedTimes = new double[numCached]; //Times predicted from replayed positions, or NaN if unchecked.
+		Arrays.fill(replayedTimes, Double.NaN);
+
+		ArrayList<Event> replayed = new ArrayList<>(); //Every replayed event, in order.
+		boolean rounding = false; //True once positions may round differently than in the cached run.
+		double lastTime = 0;
+		for (int k = 0; k < numCached; k++) {
+			double[] entry = cache._history.get(k);
+			double time = entry[0];
+			Particle p1 = _particles.get((int) entry[1]);
+			Particle p2 = entry[2] < 0 ? null : _particles.get((int) entry[2]);
+
+			// The edited particles' own boundary events don't affect anyone else, so they are replayed
+			// in between the cached events; the replay stops once an edited particle meets another one.
+			Event next = peekValidEvent(editedEvents);
+			while (next != null && next._p2 == null && next._timeOfEvent < time) {
+				editedEvents.removeFirst();
+				Event bounce = new Event(next._timeOfEvent, next._timeOfEvent, next._p1);
+				_pool.release(next);
+				lastTime = replayEditedBoundaryEvent(editedEvents, bounce, lastTime);
+				replayed.add(bounce);
+				rounding = true;
+				next = peekValidEvent(editedEvents);
+			}
+			if (time >= _duration || edited[p1._id] || (p2 != null && edited[p2._id])
+			    || (next != null && next._timeOfEvent <= time)
+			    || (!Double.isNaN(replayedTimes[k]) && replayedTimes[k] != time)) {
+				break;
+			}
+
+			Event event = p2 == null ? new Event(time, time, p1) : new Event(time, time, p1, p2);
+			lastTime = replayEvent(event, lastTime);
+			replayed.add(event);
+			if (_trace != null) {
+				_trace.record(event);
+			}
+
+			// The particles involved changed course, so re-predict their collisions with the edited ones.
+			for (int i = 0; i < _particles.size(); i++) {
+				if (edited[i]) {
+					enqueuePrediction(editedEvents, p1, _particles.get(i), time);
+					if (p2 != null) {
+						enqueuePrediction(editedEvents, p2, _particles.get(i), time);
+					}
+				}
+			}
+
+			if (rounding) {
+				for (int c = firstPredicted[k]; c >= 0; c = nextPredicted[c]) {
+					double[] predicted = cache._history.get(c);
+					Particle q1 = _particles.get((int) predicted[1]);
+					Particle q2 = predicted[2] < 0 ? null : _particles.get((int) predicted[2]);
+					replayedTimes[c] = (q2 == null ? _boundary.getBoundaryCollisionTime(q1) : getCollisionTime(q1, q2)) + time;
+				}
+			}
+		}
+
+		// Replay once more from the initial state, now that the last replayed event of every particle is
+		// known, and make each particle's predictions at that event, as a full run would.
+		int[] lastReplayed = new int[_particles.size()];
+		Arrays.fill(lastReplayed, -1);
+		for (int r = 0; r < replayed.size(); r++) {
+			Event event = replayed.get(r);
+			lastReplayed[event._p1._id] = r;
+			if (event._p2 != null) {
+				lastReplayed[event._p2._id] = r;
 			}
 		}
+		setParticleStates(initialStates);
+		lastTime = 0;
+		for (int r = 0; r < replayed.size(); r++) {
+			Event event = replayed.get(r);
+			lastTime = replayEvent(event, lastTime);
+			enqueueLastPredictions(event._p1, r, lastReplayed, edited, lastTime);
+			if (event._p2 != null) {
+				enqueueLastPredictions(event._p2, r, lastReplayed, edited, lastTime);
+			}
+		}
+
+		// Reuse the cached predictions between unchanged particles...
+		for (double[] seed : cache._seedEvents) {
+			int i = (int) seed[1];
+			int j = (int) seed[2];
+			if (!edited[i] && lastReplayed[i] < 0 && (j < 0 || (!edited[j] && lastReplayed[j] < 0)) && seed[0] >= lastTime) {
+				Particle p2 = j < 0 ? null : _particles.get(j);
+				_events.add(_pool.obtain(seed[0], 0.0, _particles.get(i), p2));
+			}
+		}
+		// ...and keep the predictions involving the edited particles, which were also made when a full
+		// run would have made them.
+		while (editedEvents.size() > 0) {
+			Event event = editedEvents.removeFirst();
+			if (isNotValidEvent(event)) {
+				_pool.release(event);
+			} else {
+				_events.add(event);
+			}
+		}
+		return lastTime;
+	}
+
+	/**
+	 * Advances all particles to the time of a replayed event and resolves it.
+	 *
+	 * @param event the event to replay
+	 * @param lastTime the simulation time at which the particles' positions currently are
+	 * @return the time of the event
+	 */
+	private double replayEvent (Event event, double lastTime) {
+		double time = event._timeOfEvent;
+		updateAllParticles(time - lastTime);
+		if (event._p2 != null) {
+			_boundary.updateAfterCollision(time, event._p1, event._p2, _uniformParticles);
+		} else {
+			//Boundary events may also move the particle (e.g. wrapping around).
+			_boundary.updateAfterBoundaryCollision(time, event._p1);
+		}
+		return time;
+	}
+
+	/**
+	 * During an incremental run, adds the predictions that a particle made at a replayed event, if that
+	 * was its last replayed event and the particle was not edited. Predictions with edited particles,
+	 * or with particles that changed course again later, are left out.
+	 *
+	 * @param p the particle
+	 * @param index the index of the replayed event
+	 * @param lastReplayed the index of each particle's last replayed event, or -1
+	 * @param edited which particles were edited
+	 * @param now the time of the replayed event
+	 */
+	private void enqueueLastPredictions (Particle p, int index, int[] lastReplayed, boolean[] edited, double now) {
+		if (edited[p._id] || lastReplayed[p._id] != index) {
+			return;
+		}
+		for (Particle other : _particles) {
+			if (other != p && !edited[other._id] && lastReplayed[other._id] <= index) {
+				enqueuePrediction(_events, p, other, now);
+			}
+		}
+		enqueuePrediction(_events, p, null, now);
+	}
+
+	/**
+	 * Returns the position, velocity and last update time of every particle.
+	 *
+	 * @return {x, y, vx, vy, last update time} for each particle
+	 */
+	private double[][] getParticleStates () {
+		double[][] states = new double[_particles.size()][];
+		for (int i = 0; i < _particles.size(); i++) {
+			Particle p = _particles.get(i);
+			states[i] = new double[] { p._x, p._y, p._vx, p._vy, p.get_lastUpdateTime() };
+		}
+		return states;
+	}
+
+	/**
+	 * Restores the states returned by getParticleStates().
+	 *
+	 * @param states the states to restore
+	 */
+	private void setParticleStates (double[][] states) {
+		for (int i = 0; i < _particles.size(); i++) {
+			Particle p = _particles.get(i);
+			p._x = states[i][0];
+			p._y = states[i][1];
+			p.setVelocity(states[i][4], states[i][2], states[i][3]);
+		}
+	}
+
+	/**
+	 * Predicts the next collision of a particle with another particle, or with a wall, and adds it
+	 * to a heap if there is one.
+	 *
+	 * @param heap the heap to add the predicted event to
+	 * @param p1 the particle
+	 * @param p2 the other particle, or null to predict a wall collision
+	 * @param now the current time in the simulation
+	 */
+	private void enqueuePrediction (Heap<Event> heap, Particle p1, Particle p2, double now) {
+		double time = p2 == null ? _boundary.getBoundaryCollisionTime(p1) : getCollisionTime(p1, p2);
+		if (time < Double.POSITIVE_INFINITY) {
+			heap.add(_pool.obtain(time + now, now, p1, p2));
+		}
+	}
+
+	/**
+	 * Replays a boundary event of an edited particle during an incremental run, and re-predicts that
+	 * particle's collisions with every other particle.
+	 *
+	 * @param editedEvents the predictions involving the edited particles
+	 * @param event the boundary event
+	 * @param lastTime the simulation time at which the particles' positions currently are
+	 * @return the time of the event
+	 */
+	private double replayEditedBoundaryEvent (HeapImpl<Event> editedEvents, Event event, double lastTime) {
+		double time = replayEvent(event, lastTime);
+		Particle p = event._p1;
+		if (_trace != null) {
+			_trace.record(event);
+		}
+
+		for (Particle other : _particles) {
+			if (other != p) {
+				enqueuePrediction(editedEvents, p, other, time);
+			}
+		}
+		enqueuePrediction(editedEvents, p, null, time);
+		return time;
+	}
+
+	/**
+	 * Returns the earliest valid event of a heap without removing it. Invalid events found on top of
+	 * the heap are discarded. The heap must keep its events in memory, so that the returned event
+	 * stays usable after it is put back.
+	 *
+	 * @param heap the heap to search
+	 * @return the earliest valid event, or null if there is none
+	 */
+	private Event peekValidEvent (HeapImpl<Event> heap) {
+		while (heap.size() > 0) {
+			Event event = heap.removeFirst();
+			if (isNotValidEvent(event)) {
+				_pool.release(event);
+				continue;
+			}
+			heap.add(event);
+			return event;
+		}
+		return null;
 	}
 
 	/**
@@ -168,15 +721,15 @@ public class ParticleSimulator extends JPanel {
 	private void enqueueParticleCollisionsAfterCollision(Event event) {
 		for(Particle p : _particles){
 				if(!p.equals(event._p1)){
-					double time = event._p1.getCollisionTime(p);
+					double time = getCollisionTime(event._p1, p);
 					if(time < Double.POSITIVE_INFINITY){
-						_events.add(new Event(time + event._timeOfEvent, event._timeOfEvent, event._p1, p));
+						_events.add(_pool.obtain(time + event._timeOfEvent, event._timeOfEvent, event._p1, p));
 					}
 				}
 				if(event._p2 != null && !p.equals(event._p2)){
-					double time = event._p2.getCollisionTime(p);
+					double time = getCollisionTime(event._p2, p);
 					if(time < Double.POSITIVE_INFINITY){
-						_events.add(new Event(time + event._timeOfEvent, event._timeOfEvent, event._p2, p));
+						_events.add(_pool.obtain(time + event._timeOfEvent, event._timeOfEvent, event._p2, p));
 					}
 				}
 			}
@@ -188,20 +741,28 @@ public class ParticleSimulator extends JPanel {
 	 * @param event the event afterwhich to check for new collisions.
 	 */
 	private void enqueueParticleWallCollisions(Event event) {
-		double time = event._p1.getWallCollisionTime(_width, _width);
+		double time = _boundary.getBoundaryCollisionTime(event._p1);
 		if(time < Double.POSITIVE_INFINITY){
-			_events.add(new Event(time + event._timeOfEvent, event._timeOfEvent, event._p1));
+			_events.add(_pool.obtain(time + event._timeOfEvent, event._timeOfEvent, event._p1, null));
 		}
 
 		if(event._p2 != null){
-			time = event._p2.getWallCollisionTime(_width, _width);
+			time = _boundary.getBoundaryCollisionTime(event._p2);
 			if(time < Double.POSITIVE_INFINITY){
-				_events.add(new Event(time + event._timeOfEvent, event._timeOfEvent, event._p2));
+				_events.add(_pool.obtain(time + event._timeOfEvent, event._timeOfEvent, event._p2, null));
 			}
 		}
 	}
 
 
+	/**
+	 * Prints the command line usage and exits with an error status.
+	 */
+	private static void exitWithUsage () {
+		System.out.println("Usage: java Particle Simulator <filename> [--periodic] [--max-events <n>] [--record <tracefile> | --save-cache <cachefile> | --incremental <cachefile>]");
+		System.exit(1);
+	}
+
 	public static void main (String[] args) throws IOException {
 		
 		//For testing:
@@ -210,13 +771,81 @@ public class ParticleSimulator extends JPanel {
 
 				
 		if (args.length < 1) {
-			System.out.println("Usage: java Particle Simulator <filename>");
-			System.exit(1);
+			exitWithUsage();
+		}
+
+		//Options may be given in any order after the filename. Only one of the headless modes may be used.
+		boolean periodic = false;
+		int maxEvents = -1;
+		String mode = null;
+		String modeFile = null;
+		for (int i = 1; i < args.length; i++) {
+			switch (args[i]) {
+			case "--periodic":
+				periodic = true;
+				break;
+			case "--max-events":
+				try {
+					maxEvents = Integer.parseInt(args[++i]);
+				} catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+					exitWithUsage();
+				}
+				if (maxEvents < 1) {
+					exitWithUsage();
+				}
+				break;
+			case "--record":
+			case "--save-cache":
+			case "--incremental":
+				if (mode != null || i + 1 >= args.length) {
+					exitWithUsage();
+				}
+				mode = args[i];
+				modeFile = args[++i];
+				break;
+			default:
+				exitWithUsage();
+			}
 		}
 
 		ParticleSimulator simulator;
 
 		simulator = new ParticleSimulator(args[0]);
+
+		//Periodic boundaries instead of reflective walls.
+		if (periodic) {
+			simulator.setBoundary(new PeriodicBoundary(simulator._width, simulator._height));
+		}
+
+		//Memory-bounded mode: spill far-future events to disk beyond the given number of events.
+		if (maxEvents > 0) {
+			simulator.setMaxEventsInMemory(maxEvents, new File(System.getProperty("java.io.tmpdir")));
+		}
+
+		//Headless replay mode: record the event order and write it out for EventTrace to compare.
+		if ("--record".equals(mode)) {
+			EventTrace trace = new EventTrace();
+			simulator.setEventTrace(trace);
+			simulator.simulate(false);
+			trace.write(modeFile);
+			return;
+		}
+
+		//Headless caching mode: run fully and save the history for later incremental runs.
+		if ("--save-cache".equals(mode)) {
+			SimulationCache cache = new SimulationCache();
+			simulator.setSimulationCache(cache);
+			simulator.simulate(false);
+			cache.write(modeFile);
+			return;
+		}
+
+		//Headless incremental mode: recompute only what the edited particles affect.
+		if ("--incremental".equals(mode)) {
+			simulator.resimulate(false, SimulationCache.read(modeFile));
+			return;
+		}
+
 		JFrame frame = new JFrame();
 		frame.setTitle("Particle Simulator");
 		frame.getContentPane().setLayout(new BorderLayout());
@@ -235,11 +864,33 @@ public class ParticleSimulator extends JPanel {
 	 */
 	public boolean testParticleSimulator(ArrayList<String> results){
 		simulate(false);
-		if(!String.valueOf(_width).equals(results.get(0))) return false;
-		if(!String.valueOf(_duration).equals(results.get(1))) return false;
-		if(_particles.size() != results.size() -2) return false;
+		return matchesResults(results);
+	}
+
+	/**
+	 * Tests the result of an incremental simulation run against a list of expected values.
+	 * 
+	 * @param baseline the cache recorded during a previous run of an unedited version of the input
+	 * @param results a list containing expected results for width, duration and particle states
+	 * @return true if the results match the expected
+	 */
+	public boolean testIncrementalParticleSimulator(SimulationCache baseline, ArrayList<String> results){
+		resimulate(false, baseline);
+		return matchesResults(results);
+	}
+
+	/**
+	 * Compares the current state of the simulation against a list of expected values.
+	 * 
+	 * @param results a list containing expected results for the header lines and particle states, as printed
+	 * @return true if the results match the expected
+	 */
+	private boolean matchesResults(ArrayList<String> results){
+		java.util.List<String> header = getHeaderLines();
+		if(results.size() < header.size() || !header.equals(results.subList(0, header.size()))) return false;
+		if(_particles.size() != results.size() - header.size()) return false;
 		for(int i = 0; i < _particles.size(); i++){
-			if(!_particles.get(i).toString().equals(results.get(i+2))) return false;
+			if(!_particles.get(i).toString().equals(results.get(i + header.size()))) return false;
 		}
 
 		return true;
@@ -1,7 +1,9 @@
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.*;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.*;
 import java.util.ArrayList;
 
 public class ParticleSimulatorTester {
@@ -110,4 +112,356 @@ public class ParticleSimulatorTester {
         ParticleSimulator simulator = new ParticleSimulator("particles_b_start.txt");
         assertTrue(simulator.testParticleSimulator(results));		
     }
+
+    @Test
+    void testTiedEventsOrderedByParticleId(){
+        p5._id = 0;
+        p6._id = 1;
+        Event e1 = new Event(10, 0, p5);
+        Event e2 = new Event(10, 0, p6);
+        Event e3 = new Event(10, 0, p5, p6);
+
+        HeapImpl<Event> heap = new HeapImpl<Event>();
+        heap.add(e2);
+        heap.add(e3);
+        heap.add(e1);
+        assertSame(heap.removeFirst(), e1);
+        assertSame(heap.removeFirst(), e3);
+        assertSame(heap.removeFirst(), e2);
+    }
+
+    @Test
+    void testReplayTracesMatch() throws IOException{
+        EventTrace trace1 = new EventTrace();
+        ParticleSimulator simulator1 = new ParticleSimulator("particles_b_start.txt");
+        simulator1.setEventTrace(trace1);
+        simulator1.simulateEvents(false);
+
+        EventTrace trace2 = new EventTrace();
+        ParticleSimulator simulator2 = new ParticleSimulator("particles_b_start.txt");
+        simulator2.setEventTrace(trace2);
+        simulator2.simulateEvents(false);
+
+        assertTrue(trace1.size() > 0);
+        assertEquals(EventTrace.firstDivergence(trace1.getLines(), trace2.getLines()), -1);
+
+        ArrayList<String> shorter = new ArrayList<String>(trace2.getLines().subList(0, 3));
+        assertEquals(EventTrace.firstDivergence(trace1.getLines(), shorter), 3);
+    }
+
+    @Test
+    void testIncrementalMatchesFullRun() throws IOException{
+        SimulationCache cache = new SimulationCache();
+        ParticleSimulator baseline = new ParticleSimulator("particles_b_start.txt");
+        baseline.setSimulationCache(cache);
+        baseline.simulateEvents(false);
+
+        //Edit the velocity of the last particle.
+        java.util.List<String> lines = new ArrayList<String>(Files.readAllLines(Paths.get("particles_b_start.txt")));
+        String[] tokens = lines.get(lines.size() - 1).split("\\s+");
+        tokens[3] = "1.5";
+        lines.set(lines.size() - 1, String.join(" ", tokens));
+        Path edited = Files.createTempFile("particles_b_edited", ".txt");
+        Files.write(edited, lines);
+
+        ParticleSimulator full = new ParticleSimulator(edited.toString());
+        full.simulateEvents(false);
+        ArrayList<String> results = new ArrayList<String>();
+        results.add("100");
+        results.add("100.0");
+        for (Particle p : full.getParticles()) {
+            results.add(p.toString());
+        }
+
+        ParticleSimulator incremental = new ParticleSimulator(edited.toString());
+        assertTrue(incremental.testIncrementalParticleSimulator(cache, results));
+        Files.delete(edited);
+    }
+
+    @Test
+    void testIncrementalMatchesFullRunOnLargerInput() throws IOException{
+        SimulationCache cache = new SimulationCache();
+        ParticleSimulator baseline = new ParticleSimulator("particlesInitial.txt");
+        baseline.setSimulationCache(cache);
+        baseline.simulateEvents(false);
+
+        //Edits of vx for particles met early and late in the run, and a longer run with no edit.
+        java.util.List<String> original = Files.readAllLines(Paths.get("particlesInitial.txt"));
+        String[][] edits = { { "11", "-2.0" }, { "50", "0.5" }, { "300", "3" }, { "1", "40" } };
+        for (String[] edit : edits) {
+            java.util.List<String> lines = new ArrayList<String>(original);
+            int line = Integer.parseInt(edit[0]);
+            String[] tokens = lines.get(line).trim().split("\\s+");
+            tokens[tokens.length == 1 ? 0 : 3] = edit[1];
+            lines.set(line, String.join(" ", tokens));
+            Path edited = Files.createTempFile("particles_initial_edited", ".txt");
+            Files.write(edited, lines);
+
+            ParticleSimulator full = new ParticleSimulator(edited.toString());
+            EventTrace fullTrace = new EventTrace();
+            full.setEventTrace(fullTrace);
+            full.simulateEvents(false);
+            ParticleSimulator incremental = new ParticleSimulator(edited.toString());
+            EventTrace incrementalTrace = new EventTrace();
+            incremental.setEventTrace(incrementalTrace);
+            incremental.resimulateEvents(false, cache);
+            Files.delete(edited);
+
+            assertEquals(-1, EventTrace.firstDivergence(fullTrace.getLines(), incrementalTrace.getLines()));
+            for (int i = 0; i < full.getNumParticles(); i++) {
+                assertEquals(full.getParticles().get(i).toString(), incremental.getParticles().get(i).toString());
+            }
+        }
+    }
+
+    @Test
+    void testMixedRadiusCollisionTime(){
+        //Centers 30 apart, closing at 10 per unit time: contact at distance 5 + 15 = 20.
+        Particle small = new Particle("small", 30, 50, 5, 0, 5);
+        Particle large = new Particle("large", 60, 50, -5, 0, 15);
+        assertEquals(small.getMixedCollisionTime(large), 1);
+        assertEquals(large.getMixedCollisionTime(small), 1);
+    }
+
+    @Test
+    void testMixedMassCollision(){
+        //Equal masses match the uniform kernel.
+        Particle a = new Particle("a", 40, 50, 5, 0, 5);
+        Particle b = new Particle("b", 50, 50, -5, 0, 5);
+        a.updateAfterMixedCollision(0, b);
+        assertEquals(a._vx, -5);
+        assertEquals(b._vx, 5);
+
+        //A light particle bounces off a much heavier one; momentum and energy are conserved.
+        Particle light = new Particle("light", 40, 50, 6, 0, 5, 1);
+        Particle heavy = new Particle("heavy", 50, 50, 0, 0, 5, 3);
+        light.updateAfterMixedCollision(0, heavy);
+        assertEquals(light._vx, -3);
+        assertEquals(heavy._vx, 3);
+        assertEquals(Particle.build(heavy.toString()).getMass(), 3);
+    }
+
+    @Test
+    void testMixedParticlesFile() throws IOException{
+        ParticleSimulator simulator = new ParticleSimulator("particles_mixed_start.txt");
+        double energyBefore = getKineticEnergy(simulator.getParticles());
+        simulator.simulateEvents(false);
+        java.util.List<Particle> particles = simulator.getParticles();
+        assertTrue(simulator.getNumEventsProcessed() > 0);
+        assertEquals(energyBefore, getKineticEnergy(particles), 1e-9 * energyBefore);
+
+        //The uniform kernel would use the wrong contact distance, and particles would overlap.
+        double slack = 1e-6;
+        for (int i = 0; i < particles.size(); i++) {
+            Particle p = particles.get(i);
+            double r = p.getRadius();
+            assertTrue(p._x >= r - slack && p._x <= 200 - r + slack && p._y >= r - slack && p._y <= 200 - r + slack);
+            for (int j = i + 1; j < particles.size(); j++) {
+                Particle q = particles.get(j);
+                assertTrue(Math.hypot(p._x - q._x, p._y - q._y) >= r + q.getRadius() - slack);
+            }
+        }
+    }
+
+    private double getKineticEnergy(java.util.List<Particle> particles){
+        double energy = 0;
+        for (Particle p : particles) {
+            energy += 0.5 * p.getMass() * (p._vx * p._vx + p._vy * p._vy);
+        }
+        return energy;
+    }
+
+    @Test
+    void testEventPoolReusesReleasedEvents(){
+        EventPool pool = new EventPool();
+        Event e1 = pool.obtain(3, 1, p5, p6);
+        pool.release(e1);
+        assertEquals(pool.size(), 1);
+
+        Event e2 = pool.obtain(7, 2, p7, null);
+        assertSame(e2, e1);
+        assertEquals(pool.size(), 0);
+        assertEquals(e2._timeOfEvent, 7);
+        assertEquals(e2._timeEventCreated, 2);
+        assertSame(e2._p1, p7);
+        assertNull(e2._p2);
+    }
+
+    @Test
+    void testGeneratedScenarioHasNoOverlaps(){
+        for (ScenarioGenerator.VelocityDistribution distribution : ScenarioGenerator.VelocityDistribution.values()) {
+            ScenarioGenerator generator = new ScenarioGenerator(300, 0.3, 400, distribution, 5, 10, 42);
+            java.util.List<Particle> particles = generator.generate();
+            assertEquals(particles.size(), 300);
+
+            double r = generator.getRadius();
+            for (int i = 0; i < particles.size(); i++) {
+                Particle p = particles.get(i);
+                assertEquals(p.getRadius(), r);
+                assertTrue(p._x >= r && p._x <= 400 - r && p._y >= r && p._y <= 400 - r);
+                for (int j = i + 1; j < particles.size(); j++) {
+                    Particle q = particles.get(j);
+                    assertTrue(Math.hypot(p._x - q._x, p._y - q._y) > 2 * r);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testScalingHarness() throws IOException{
+        ScalingHarness harness = new ScalingHarness(0.2, 5, ScenarioGenerator.VelocityDistribution.GAUSSIAN, 5, 5, 0);
+        ScalingHarness.Result result = harness.run(100);
+        assertEquals(result._numParticles, 100);
+        assertTrue(result._numEventsProcessed > 0);
+        assertTrue(result._peakQueueSize > 0);
+        assertTrue(result._bytesPerParticle > 0);
+        assertTrue(Double.isFinite(result.getEventsPerSecond()));
+    }
+
+    @Test
+    void testCollisionEarlyRejection(){
+        CollisionCounters counters = new CollisionCounters();
+
+        //Moving apart.
+        Particle a = new Particle("a", 30, 50, -5, 0, 5);
+        Particle b = new Particle("b", 60, 50, 5, 0, 5);
+        assertEquals(a.getCollisionTime(b, counters), Double.POSITIVE_INFINITY);
+        assertEquals(counters._numSeparatingRejections, 1);
+
+        //Approaching, but passing 20 apart.
+        Particle c = new Particle("c", 30, 50, 5, 0, 5);
+        Particle d = new Particle("d", 60, 70, -5, 0, 5);
+        assertEquals(c.getCollisionTime(d, counters), Double.POSITIVE_INFINITY);
+        assertEquals(counters._numMissRejections, 1);
+
+        assertEquals(p5.getCollisionTime(p6, counters), 2);
+        assertEquals(counters._numFullSolves, 1);
+    }
+
+    @Test
+    void testCollisionCountersPerSimulator() throws IOException{
+        ParticleSimulator first = new ParticleSimulator("particles_b_start.txt");
+        first.simulateEvents(false);
+        ParticleSimulator second = new ParticleSimulator("particles_b_start.txt");
+        second.simulateEvents(false);
+
+        assertTrue(first.getNumFullSolves() > 0);
+        assertEquals(first.getNumSeparatingRejections(), second.getNumSeparatingRejections());
+        assertEquals(first.getNumMissRejections(), second.getNumMissRejections());
+        assertEquals(first.getNumFullSolves(), second.getNumFullSolves());
+    }
+
+    @Test
+    void testParticlesBWithSpilledEvents() throws IOException{
+        ArrayList<String> results = new ArrayList<String>();
+        results.add("100");
+        results.add("100.0");
+        results.add("p0 75.3893241184703  40.735423878567914 -1.8312953367190943 3.0361562368245867 10.0");
+        results.add("p1 75.8625154330703  13.448369137802224 8.79328612686825 -0.9027546511876512 10.0");
+        results.add("p2 15.212254520849797  38.3375114053905 -5.822420645036839 -0.6250469249075055 10.0");
+
+        ParticleSimulator simulator = new ParticleSimulator("particles_b_start.txt");
+        simulator.setMaxEventsInMemory(4, new File(System.getProperty("java.io.tmpdir")));
+        assertTrue(simulator.testParticleSimulator(results));
+    }
+
+    @Test
+    void testSpilledEventsWithCacheAndTrace() throws IOException{
+        SimulationCache expectedCache = new SimulationCache();
+        EventTrace expectedTrace = new EventTrace();
+        ParticleSimulator inMemory = new ParticleSimulator("particlesInitial.txt");
+        inMemory.setSimulationCache(expectedCache);
+        inMemory.setEventTrace(expectedTrace);
+        inMemory.simulateEvents(false);
+
+        //The cap is far below the number of seed events, so seeds are spilled as soon as they are added.
+        SimulationCache cache = new SimulationCache();
+        EventTrace trace = new EventTrace();
+        ParticleSimulator spilling = new ParticleSimulator("particlesInitial.txt");
+        spilling.setMaxEventsInMemory(50, new File(System.getProperty("java.io.tmpdir")));
+        spilling.setSimulationCache(cache);
+        spilling.setEventTrace(trace);
+        spilling.simulateEvents(false);
+
+        assertEquals(-1, EventTrace.firstDivergence(expectedTrace.getLines(), trace.getLines()));
+        assertEquals(expectedCache._seedEvents.size(), cache._seedEvents.size());
+        for (int i = 0; i < cache._seedEvents.size(); i++) {
+            assertArrayEquals(expectedCache._seedEvents.get(i), cache._seedEvents.get(i));
+        }
+        assertEquals(expectedCache._history.size(), cache._history.size());
+    }
+
+    @Test
+    void testReflectiveBoundaryUsesHeight(){
+        //Bottom wall of a 500 x 200 box.
+        Particle p = new Particle("p", 50, 185, 0, 5, 5);
+        Boundary boundary = new ReflectiveBoundary(500, 200);
+        assertEquals(boundary.getBoundaryCollisionTime(p), 2.0);
+        p.update(2);
+        boundary.updateAfterBoundaryCollision(2, p);
+        assertEquals(p._vy, -5);
+    }
+
+    @Test
+    void testNonSquareBoxPrintsHeight() throws IOException{
+        Path input = Files.createTempFile("particles_non_square", ".txt");
+        Files.write(input, java.util.List.of("200 100 10", "p0 50 50 5 0 10"));
+        ArrayList<String> results = new ArrayList<String>();
+        results.add("200 100 10.0");
+        results.add("p0 100.0  50.0 5.0 0.0 10.0");
+
+        ParticleSimulator simulator = new ParticleSimulator(input.toString());
+        assertTrue(simulator.testParticleSimulator(results));
+        Files.delete(input);
+    }
+
+    @Test
+    void testCacheRejectsDifferentBox() throws IOException{
+        SimulationCache cache = new SimulationCache();
+        ParticleSimulator baseline = new ParticleSimulator("particles_b_start.txt");
+        baseline.setSimulationCache(cache);
+        baseline.simulateEvents(false);
+
+        //Same particles in a taller box.
+        java.util.List<String> lines = new ArrayList<String>(Files.readAllLines(Paths.get("particles_b_start.txt")));
+        lines.set(0, "100 120 100");
+        Path taller = Files.createTempFile("particles_b_taller", ".txt");
+        Files.write(taller, lines);
+        ParticleSimulator tallerSimulator = new ParticleSimulator(taller.toString());
+        assertThrows(IllegalArgumentException.class, () -> tallerSimulator.resimulateEvents(false, cache));
+        Files.delete(taller);
+
+        //Same particles and box, but with periodic boundaries.
+        ParticleSimulator periodic = new ParticleSimulator("particles_b_start.txt");
+        periodic.setBoundary(new PeriodicBoundary(100, 100));
+        assertThrows(IllegalArgumentException.class, () -> periodic.resimulateEvents(false, cache));
+    }
+
+    @Test
+    void testPeriodicBoundaryWrapsAround(){
+        Particle p = new Particle("p", 490, 50, 5, 0, 5);
+        Boundary boundary = new PeriodicBoundary(500, 200);
+        assertEquals(boundary.getBoundaryCollisionTime(p), 2.0);
+        p.update(2);
+        boundary.updateAfterBoundaryCollision(2, p);
+        assertEquals(p._x, 0);
+        assertEquals(p._vx, 5);
+    }
+
+    @Test
+    void testPeriodicCollisionAcrossEdge(){
+        //Centers 20 apart across the right/left edge, closing at 10 per unit time.
+        Particle a = new Particle("a", 490, 50, 5, 0, 5);
+        Particle b = new Particle("b", 10, 50, -5, 0, 5);
+        Boundary boundary = new PeriodicBoundary(500, 200);
+        assertEquals(boundary.getCollisionTime(a, b, true, null), 1.0);
+        assertEquals(new ReflectiveBoundary(500, 200).getCollisionTime(a, b, true, null), Double.POSITIVE_INFINITY);
+
+        a.update(1);
+        b.update(1);
+        boundary.updateAfterCollision(1, a, b, true);
+        assertEquals(a._vx, -5);
+        assertEquals(b._vx, 5);
+        assertEquals(b._x, 5);
+    }
 }
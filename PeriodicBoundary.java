@@ -0,0 +1,171 @@
+/**
+ * A toroidal box: a particle that leaves through one side re-enters through the opposite side, and
+ * particles near opposite sides can collide across the edge. A particle crossing an edge is treated
+ * as a boundary event, so each particle's predictions are refreshed whenever it wraps around.
+ */
+class PeriodicBoundary implements Boundary {
+	private final int _width;
+	private final int _height;
+
+	/**
+	 * @param width the width of the box
+	 * @param height the height of the box
+	 */
+	public PeriodicBoundary (int width, int height) {
+		_width = width;
+		_height = height;
+	}
+
+	/**
+	 * Computes the time until the particle's center crosses an edge of the box.
+	 * @param p the particle
+	 * @return the time until the particle wraps around, or infinity if it is not moving
+	 */
+	public double getBoundaryCollisionTime (Particle p) {
+		double timeX = Double.POSITIVE_INFINITY;
+		double timeY = Double.POSITIVE_INFINITY;
+
+		if (p._vx > 0) { //Crossing the right edge.
+			timeX = (_width - p._x) / p._vx;
+		} else if (p._vx < 0) { //Crossing the left edge.
+			timeX = p._x / -p._vx;
+		}
+
+		if (p._vy > 0) { //Crossing the bottom edge.
+			timeY = (_height - p._y) / p._vy;
+		} else if (p._vy < 0) { //Crossing the top edge.
+			timeY = p._y / -p._vy;
+		}
+
+		//Adds a margin for very small values, in order to avoid infinitely repeating the same crossing.
+		double SMALL = 1e-6;
+		if (timeX > SMALL && timeY > SMALL) {
+			return Math.min(timeX, timeY);
+		}
+		if (timeX > SMALL) {
+			return timeX;
+		}
+		if (timeY > SMALL) {
+			return timeY;
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Moves a particle that has reached an edge of the box to the opposite edge.
+	 * @param now the current time in the simulation
+	 * @param p the particle
+	 */
+	public void updateAfterBoundaryCollision (double now, Particle p) {
+		double SMALL = 1e-6 * Math.abs(p._vx);
+		if (p._vx > 0 && p._x >= _width - SMALL) { //Crossed the right edge.
+			p._x -= _width;
+		} else if (p._vx < 0 && p._x <= SMALL) { //Crossed the left edge.
+			p._x += _width;
+		}
+
+		SMALL = 1e-6 * Math.abs(p._vy);
+		if (p._vy > 0 && p._y >= _height - SMALL) { //Crossed the bottom edge.
+			p._y -= _height;
+		} else if (p._vy < 0 && p._y <= SMALL) { //Crossed the top edge.
+			p._y += _height;
+		}
+
+		p.setVelocity(now, p._vx, p._vy);
+	}
+
+	/**
+	 * Computes the time until two particles collide, considering the periodic images of the second
+	 * particle. The prediction only needs to hold until either particle next wraps around, since that
+	 * event refreshes its predictions; within that horizon only the images that the pair's relative
+	 * motion can actually reach are solved for, which is usually just one.
+	 * @param p1 the first particle
+	 * @param p2 the second particle
+	 * @param uniformParticles true if all particles share one radius and mass, selecting the faster kernels
+	 * @param counters the counters to update with how each image's prediction was resolved, or null
+	 * @return the time until the particles collide, or infinity if they never will
+	 */
+	public double getCollisionTime (Particle p1, Particle p2, boolean uniformParticles, CollisionCounters counters) {
+		double horizon = Math.min(getBoundaryCollisionTime(p1), getBoundaryCollisionTime(p2));
+		double contact = p1.getRadius() + p2.getRadius();
+		double dx = p1._x - p2._x;
+		double dy = p1._y - p2._y;
+		double dvx = p1._vx - p2._vx;
+		double dvy = p1._vy - p2._vy;
+
+		double t = Double.POSITIVE_INFINITY;
+		for (int kx = -1; kx <= 1; kx++) {
+			if (!canReach(dx + kx * _width, dvx, horizon, contact)) {
+				continue;
+			}
+			for (int ky = -1; ky <= 1; ky++) {
+				if (!canReach(dy + ky * _height, dvy, horizon, contact)) {
+					continue;
+				}
+				double shiftX = -kx * _width;
+				double shiftY = -ky * _height;
+				double time = uniformParticles ? p1.getCollisionTime(p2, shiftX, shiftY, counters)
+							       : p1.getMixedCollisionTime(p2, shiftX, shiftY, counters);
+				t = Math.min(t, time);
+			}
+		}
+		return t;
+	}
+
+	/**
+	 * Updates both particles' velocities after a collision between them. The collision may have
+	 * happened across an edge of the box, so the second particle is temporarily moved to its image
+	 * nearest to the first particle while the collision is resolved.
+	 * @param now the current time in the simulation
+	 * @param p1 the first particle
+	 * @param p2 the particle that p1 collided with
+	 * @param uniformParticles true if all particles share one radius and mass, selecting the faster kernels
+	 */
+	public void updateAfterCollision (double now, Particle p1, Particle p2, boolean uniformParticles) {
+		double x = p2._x;
+		double y = p2._y;
+		p2._x += getNearestImageShift(p1._x - p2._x, _width);
+		p2._y += getNearestImageShift(p1._y - p2._y, _height);
+
+		if (uniformParticles) {
+			p1.updateAfterCollision(now, p2);
+		} else {
+			p1.updateAfterMixedCollision(now, p2);
+		}
+
+		p2._x = x;
+		p2._y = y;
+	}
+
+	/**
+	 * Returns the offset that moves a particle to the image nearest to another one along one axis.
+	 * @param separation the separation between the particles along the axis
+	 * @param size the size of the box along the axis
+	 * @return -size, 0 or size
+	 */
+	private static double getNearestImageShift (double separation, int size) {
+		if (separation > size / 2.0) {
+			return size;
+		}
+		if (separation < -size / 2.0) {
+			return -size;
+		}
+		return 0;
+	}
+
+	/**
+	 * Tests whether a one-dimensional separation can come within the contact distance before the horizon.
+	 * @param separation the current separation along one axis
+	 * @param velocity the rate of change of the separation
+	 * @param horizon the time until which the prediction must hold
+	 * @param contact the contact distance
+	 * @return true if the separation reaches [-contact, contact] before the horizon
+	 */
+	private static boolean canReach (double separation, double velocity, double horizon, double contact) {
+		if (velocity == 0) {
+			return Math.abs(separation) <= contact;
+		}
+		double end = separation + velocity * horizon;
+		return Math.min(separation, end) <= contact && Math.max(separation, end) >= -contact;
+	}
+}
@@ -0,0 +1,36 @@
+/**
+ * A box with solid walls that particles bounce off.
+ */
+class ReflectiveBoundary implements Boundary {
+	private final int _width;
+	private final int _height;
+
+	/**
+	 * @param width the width of the box
+	 * @param height the height of the box
+	 */
+	public ReflectiveBoundary (int width, int height) {
+		_width = width;
+		_height = height;
+	}
+
+	public double getBoundaryCollisionTime (Particle p) {
+		return p.getWallCollisionTime(_width, _height);
+	}
+
+	public void updateAfterBoundaryCollision (double now, Particle p) {
+		p.updateAfterWallCollision(now, _width, _height);
+	}
+
+	public double getCollisionTime (Particle p1, Particle p2, boolean uniformParticles, CollisionCounters counters) {
+		return uniformParticles ? p1.getCollisionTime(p2, counters) : p1.getMixedCollisionTime(p2, counters);
+	}
+
+	public void updateAfterCollision (double now, Particle p1, Particle p2, boolean uniformParticles) {
+		if (uniformParticles) {
+			p1.updateAfterCollision(now, p2);
+		} else {
+			p1.updateAfterMixedCollision(now, p2);
+		}
+	}
+}
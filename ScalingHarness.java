@@ -0,0 +1,150 @@
+import java.util.*;
+import java.io.*;
+import java.lang.management.*;
+import java.lang.ref.Reference;
+
+/**
+ * Runs ParticleSimulator on generated scenarios of growing size and reports how it scales. The
+ * particle radius and density are held fixed, so the box grows with the number of particles. For
+ * each size the harness reports the number of processed events, events per second, the peak size of
+ * the event queue, the memory retained per particle at the end of the run, and the fraction of
+ * collision predictions rejected before the full quadratic solve.
+ */
+public class ScalingHarness {
+	private final double _density;
+	private final double _radius;
+	private final ScenarioGenerator.VelocityDistribution _distribution;
+	private final double _speed;
+	private final double _duration;
+	private final long _seed;
+
+	/**
+	 * Holds the measurements of one run.
+	 */
+	public static class Result {
+		public int _numParticles;
+		public int _width;
+		public int _numEventsProcessed;
+		public int _numEventsInvalid;
+		public double _seconds;
+		public int _peakQueueSize;
+		public long _bytesPerParticle; //Memory retained by the simulator per particle, or -1 if it could not be measured.
+		public long _numPredictions;
+		public long _numRejections;
+
+		public double getEventsPerSecond () {
+			return _numEventsProcessed / _seconds;
+		}
+
+		public double getRejectedFraction () {
+			return (double) _numRejections / _numPredictions;
+		}
+
+		public String toString () {
+			return String.format("%8d %8d %10d %10d %14.0f %12d %12s %10.1f%%", _numParticles, _width, _numEventsProcessed,
+					     _numEventsInvalid, getEventsPerSecond(), _peakQueueSize,
+					     _bytesPerParticle > 0 ? String.valueOf(_bytesPerParticle) : "n/a", 100 * getRejectedFraction());
+		}
+	}
+
+	/**
+	 * @param density the fraction of the box area covered by particles
+	 * @param radius the particle radius
+	 * @param distribution the distribution of the particles' velocities
+	 * @param speed the scale of the velocity distribution
+	 * @param duration the simulated duration of each run
+	 * @param seed the seed used to generate every scenario
+	 */
+	public ScalingHarness (double density, double radius, ScenarioGenerator.VelocityDistribution distribution,
+			       double speed, double duration, long seed) {
+		_density = density;
+		_radius = radius;
+		_distribution = distribution;
+		_speed = speed;
+		_duration = duration;
+		_seed = seed;
+	}
+
+	/**
+	 * Generates a scenario with the given number of particles and simulates it.
+	 *
+	 * @param numParticles the number of particles
+	 * @return the measurements of the run
+	 */
+	public Result run (int numParticles) throws IOException {
+		int width = ScenarioGenerator.getWidthFor(numParticles, _density, _radius);
+		File file = File.createTempFile("scenario", ".txt");
+		try {
+			new ScenarioGenerator(numParticles, _density, width, _distribution, _speed, _duration, _seed).write(file.getPath());
+
+			ParticleSimulator simulator = new ParticleSimulator(file.getPath());
+			long start = System.nanoTime();
+			simulator.simulateEvents(false);
+			long end = System.nanoTime();
+
+			Result result = new Result();
+			result._numParticles = numParticles;
+			result._width = width;
+			result._numEventsProcessed = simulator.getNumEventsProcessed();
+			result._numEventsInvalid = simulator.getNumEventsInvalid();
+			result._seconds = (end - start) / 1e9;
+			result._peakQueueSize = simulator.getPeakQueueSize();
+			result._numRejections = simulator.getNumSeparatingRejections() + simulator.getNumMissRejections();
+			result._numPredictions = result._numRejections + simulator.getNumFullSolves();
+
+			// Measure the heap with and without the simulator back to back, so that nothing else
+			// allocated during the run is counted.
+			long usedWith = getSettledMemory();
+			Reference.reachabilityFence(simulator); //The simulator must not be collected before the reading.
+			simulator = null;
+			long retained = usedWith - getSettledMemory();
+			result._bytesPerParticle = retained > 0 ? retained / numParticles : -1;
+			return result;
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Returns the heap memory in use once garbage collection stops freeing any more of it. A single
+	 * collection may leave garbage behind, for example objects only released once the reference
+	 * handler has run, so collections are repeated until the usage stops falling three times in a row.
+	 *
+	 * @return the used memory in bytes
+	 */
+	private static long getSettledMemory () {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		long used = Long.MAX_VALUE;
+		for (int i = 0, unchanged = 0; i < 50 && unchanged < 3; i++) {
+			System.gc();
+			try {
+				Thread.sleep(10); //Give the reference handler a chance to release what the collection queued.
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			long now = memory.getHeapMemoryUsage().getUsed();
+			unchanged = now < used ? 0 : unchanged + 1;
+			used = Math.min(used, now);
+		}
+		return used;
+	}
+
+	public static void main (String[] args) throws IOException {
+		int[] counts = { 100, 200, 400, 800, 1600 };
+		if (args.length > 0) {
+			counts = Arrays.stream(args[0].split(",")).mapToInt(Integer::parseInt).toArray();
+		}
+		double density = args.length > 1 ? Double.parseDouble(args[1]) : 0.1;
+		double duration = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+		ScenarioGenerator.VelocityDistribution distribution =
+			args.length > 3 ? ScenarioGenerator.VelocityDistribution.valueOf(args[3]) : ScenarioGenerator.VelocityDistribution.UNIFORM;
+
+		ScalingHarness harness = new ScalingHarness(density, 5, distribution, 5, duration, 0);
+		harness.run(counts[0]); //Warm up class loading and the JIT before measuring.
+		System.out.println(String.format("%8s %8s %10s %10s %14s %12s %12s %11s", "n", "width", "events", "invalid",
+						 "events/sec", "peak queue", "bytes/part", "rejected"));
+		for (int n : counts) {
+			System.out.println(harness.run(n));
+		}
+	}
+}
@@ -0,0 +1,147 @@
+import java.util.*;
+import java.io.*;
+
+/**
+ * Generates random particle scenarios in the same file format that ParticleSimulator reads.
+ * A scenario is described by its particle count, density (the fraction of the box covered by
+ * particles), box width and velocity distribution; the particle radius follows from these. Particles
+ * are placed on a jittered square lattice, so they never overlap each other or the walls.
+ */
+public class ScenarioGenerator {
+	/**
+	 * The distribution from which particle velocities are drawn.
+	 */
+	public enum VelocityDistribution {
+		UNIFORM, //Each component uniform in [-speed, speed].
+		GAUSSIAN, //Each component normal with standard deviation speed.
+		FIXED_SPEED //Magnitude speed in a uniformly random direction.
+	}
+
+	private final int _numParticles;
+	private final double _density;
+	private final int _width;
+	private final VelocityDistribution _distribution;
+	private final double _speed;
+	private final double _duration;
+	private final long _seed;
+
+	/**
+	 * @param numParticles the number of particles to generate
+	 * @param density the fraction of the box area covered by particles
+	 * @param width the width (and height) of the box
+	 * @param distribution the distribution of the particles' velocities
+	 * @param speed the scale of the velocity distribution
+	 * @param duration the duration of the simulation
+	 * @param seed the seed of the random number generator, so scenarios can be regenerated
+	 */
+	public ScenarioGenerator (int numParticles, double density, int width, VelocityDistribution distribution,
+				  double speed, double duration, long seed) {
+		_numParticles = numParticles;
+		_density = density;
+		_width = width;
+		_distribution = distribution;
+		_speed = speed;
+		_duration = duration;
+		_seed = seed;
+	}
+
+	/**
+	 * Returns the radius that gives every particle the same size at the configured density.
+	 *
+	 * @return the particle radius
+	 */
+	public double getRadius () {
+		return Math.sqrt(_density * _width * _width / (_numParticles * Math.PI));
+	}
+
+	/**
+	 * Returns the box width needed to hold a number of particles of a given radius at a given density.
+	 *
+	 * @param numParticles the number of particles
+	 * @param density the fraction of the box area covered by particles
+	 * @param radius the particle radius
+	 * @return the box width, rounded up
+	 */
+	public static int getWidthFor (int numParticles, double density, double radius) {
+		return (int) Math.ceil(Math.sqrt(numParticles * Math.PI * radius * radius / density));
+	}
+
+	/**
+	 * Generates the particles of the scenario.
+	 *
+	 * @return the particles
+	 * @throws IllegalArgumentException if the particles are too large to fit on the lattice
+	 */
+	public java.util.List<Particle> generate () {
+		Random random = new Random(_seed);
+		double radius = getRadius();
+		int cellsPerRow = (int) Math.ceil(Math.sqrt(_numParticles));
+		double cellSize = (double) _width / cellsPerRow;
+		double slack = cellSize / 2 - radius - 1e-3 * cellSize; //How far a particle may move from its cell's center.
+		if (slack < 0) {
+			throw new IllegalArgumentException("Density too high to place " + _numParticles + " particles");
+		}
+
+		// Choose a random subset of the lattice cells.
+		int[] cells = new int[cellsPerRow * cellsPerRow];
+		for (int i = 0; i < cells.length; i++) {
+			cells[i] = i;
+		}
+		for (int i = cells.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int temp = cells[i];
+			cells[i] = cells[j];
+			cells[j] = temp;
+		}
+
+		java.util.List<Particle> particles = new ArrayList<>();
+		for (int i = 0; i < _numParticles; i++) {
+			double x = (cells[i] % cellsPerRow + 0.5) * cellSize + (2 * random.nextDouble() - 1) * slack;
+			double y = (cells[i] / cellsPerRow + 0.5) * cellSize + (2 * random.nextDouble() - 1) * slack;
+			double vx, vy;
+			switch (_distribution) {
+			case GAUSSIAN:
+				vx = random.nextGaussian() * _speed;
+				vy = random.nextGaussian() * _speed;
+				break;
+			case FIXED_SPEED:
+				double angle = 2 * Math.PI * random.nextDouble();
+				vx = Math.cos(angle) * _speed;
+				vy = Math.sin(angle) * _speed;
+				break;
+			default:
+				vx = (2 * random.nextDouble() - 1) * _speed;
+				vy = (2 * random.nextDouble() - 1) * _speed;
+			}
+			particles.add(new Particle("p" + i, x, y, vx, vy, radius));
+		}
+		return particles;
+	}
+
+	/**
+	 * Writes the scenario to a file that ParticleSimulator can read.
+	 *
+	 * @param filename the name of the file to write
+	 */
+	public void write (String filename) throws IOException {
+		try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(filename)))) {
+			out.println(_width + " " + _duration);
+			for (Particle p : generate()) {
+				out.println(p);
+			}
+		}
+	}
+
+	public static void main (String[] args) throws IOException {
+		if (args.length < 5) {
+			System.out.println("Usage: java ScenarioGenerator <filename> <numParticles> <density> <width> <duration> [UNIFORM|GAUSSIAN|FIXED_SPEED] [speed] [seed]");
+			System.exit(1);
+		}
+
+		VelocityDistribution distribution = args.length > 5 ? VelocityDistribution.valueOf(args[5]) : VelocityDistribution.UNIFORM;
+		double speed = args.length > 6 ? Double.parseDouble(args[6]) : 5;
+		long seed = args.length > 7 ? Long.parseLong(args[7]) : 0;
+		new ScenarioGenerator(Integer.parseInt(args[1]), Double.parseDouble(args[2]), Integer.parseInt(args[3]),
+				      distribution, speed, Double.parseDouble(args[4]), seed).write(args[0]);
+	}
+}
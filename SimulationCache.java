@@ -0,0 +1,104 @@
+import java.util.*;
+import java.io.*;
+
+/**
+ * Caches the results of a full simulation run so that a later run, in which only a few particles
+ * were edited, can skip the work that the edit does not affect. The cache holds the initial state of
+ * every particle, the seed predictions made by enqueueInitialEvents(), and the history of processed
+ * events.
+ */
+public class SimulationCache implements Serializable {
+	private static final long serialVersionUID = 3L;
+
+	int _width;
+	int _height;
+	String _boundary; //Class name of the boundary, since particles move differently in each kind of box.
+	String[] _initialStates; //Particle.toString() of each particle before the simulation started.
+	ArrayList<double[]> _seedEvents = new ArrayList<>(); //{time, p1 id, p2 id or -1 for a wall}
+	ArrayList<double[]> _history = new ArrayList<>(); //{time, p1 id, p2 id or -1 for a wall}
+
+	/**
+	 * Records the initial state of a simulation.
+	 *
+	 * @param width the width of the box containing the particles
+	 * @param height the height of the box containing the particles
+	 * @param boundary the boundary of the box
+	 * @param particles the particles, indexed by id
+	 */
+	void recordInitialState (int width, int height, Boundary boundary, List<Particle> particles) {
+		_width = width;
+		_height = height;
+		_boundary = boundary.getClass().getName();
+		_initialStates = new String[particles.size()];
+		for (int i = 0; i < particles.size(); i++) {
+			_initialStates[i] = particles.get(i).toString();
+		}
+		_seedEvents.clear();
+		_history.clear();
+	}
+
+	/**
+	 * Records a prediction made while seeding the event queue at time 0.
+	 *
+	 * @param event the predicted event
+	 */
+	void recordSeedEvent (Event event) {
+		_seedEvents.add(new double[] { event._timeOfEvent, event._p1._id, event._p2 == null ? -1 : event._p2._id });
+	}
+
+	/**
+	 * Records a processed event. The first particle of an event is the one that predicted it.
+	 *
+	 * @param event the processed event
+	 */
+	void recordProcessedEvent (Event event) {
+		_history.add(new double[] { event._timeOfEvent, event._p1._id, event._p2 == null ? -1 : event._p2._id });
+	}
+
+	/**
+	 * Determines which particles differ from the cached initial state.
+	 *
+	 * @param width the width of the box of the new simulation
+	 * @param height the height of the box of the new simulation
+	 * @param boundary the boundary of the box of the new simulation
+	 * @param particles the particles of the new simulation, indexed by id
+	 * @return edited[i] is true if particle i differs from the cached run
+	 * @throws IllegalArgumentException if the new simulation is not an edit of the cached one
+	 */
+	boolean[] findEditedParticles (int width, int height, Boundary boundary, List<Particle> particles) {
+		if (_initialStates == null || width != _width || height != _height || !boundary.getClass().getName().equals(_boundary)
+		    || particles.size() != _initialStates.length) {
+			throw new IllegalArgumentException("The simulation does not match the cached run");
+		}
+		boolean[] edited = new boolean[particles.size()];
+		for (int i = 0; i < particles.size(); i++) {
+			edited[i] = !particles.get(i).toString().equals(_initialStates[i]);
+		}
+		return edited;
+	}
+
+	/**
+	 * Writes the cache to a file.
+	 *
+	 * @param filename the name of the file to write
+	 */
+	public void write (String filename) throws IOException {
+		try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(filename)))) {
+			out.writeObject(this);
+		}
+	}
+
+	/**
+	 * Reads a cache previously written by write().
+	 *
+	 * @param filename the name of the file to read
+	 * @return the cache
+	 */
+	public static SimulationCache read (String filename) throws IOException {
+		try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
+			return (SimulationCache) in.readObject();
+		} catch (ClassNotFoundException cnfe) {
+			throw new IOException(cnfe);
+		}
+	}
+}
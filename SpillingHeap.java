@@ -0,0 +1,353 @@
+import java.util.*;
+import java.io.*;
+
+/**
+ * A Heap of Events that keeps at most a fixed number of events in memory. When the in-memory heap
+ * grows past its cap, the far-future half of its events is written to a sorted run file on disk.
+ * Once the in-memory heap runs dry, the earliest spilled events are merged back from the run files.
+ * Every event in memory always has a higher priority than every spilled event, so events come out
+ * in exactly the same order as from a HeapImpl.
+ *
+ * Events without particles (such as the simulation's termination event) cannot be written to disk
+ * and are always kept in memory.
+ *
+ * The heap takes ownership of every added event. A spilled event is dropped once it is written out,
+ * and removeFirst() later returns a copy obtained from the pool. Spilled events are not released to
+ * the pool, since the caller may still refer to them.
+ */
+class SpillingHeap implements Heap<Event> {
+	private static final int MAX_RUNS = 32; //The smaller half of the runs is merged once there are more than this.
+
+	private final java.util.List<Particle> _particles; //Used to resolve particle ids when reading events back.
+	private final EventPool _pool;
+	private final int _maxInMemory;
+	private final File _directory;
+
+	private HeapImpl<Event> _memory; //Events with a higher priority than _horizon.
+	private final HeapImpl<Event> _pinned; //Events that cannot be spilled.
+	private final ArrayList<Event> _pending; //Events with a lower priority than _horizon, not yet written out.
+	private HeapImpl<Run> _runs; //Spilled run files, ordered by their next event.
+	private Event _horizon; //The highest priority event that is spilled or pending, or null if there is none.
+	private int _numSpilled; //Number of events in run files that have not been read back.
+	private int _numRunFiles;
+
+	/**
+	 * A sorted file of spilled events, read back one event at a time.
+	 */
+	private class Run implements Comparable<Run> {
+		final File _file;
+		final DataInputStream _in;
+		int _remaining;
+		Event _head;
+
+		Run (File file, int size) throws IOException {
+			_file = file;
+			_in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			_remaining = size;
+			advance();
+		}
+
+		/**
+		 * Reads the next event of the run into _head, or closes and deletes the run if it is exhausted.
+		 */
+		void advance () throws IOException {
+			if (_remaining == 0) {
+				_head = null;
+				_in.close();
+				_file.delete();
+				return;
+			}
+			_remaining--;
+			double timeOfEvent = _in.readDouble();
+			double timeEventCreated = _in.readDouble();
+			Particle p1 = _particles.get(_in.readInt());
+			int p2 = _in.readInt();
+			_head = _pool.obtain(timeOfEvent, timeEventCreated, p1, p2 < 0 ? null : _particles.get(p2));
+		}
+
+		@Override
+		public int compareTo (Run r) {
+			return _head.compareTo(r._head);
+		}
+	}
+
+	/**
+	 * @param particles the particles of the simulation, indexed by id
+	 * @param pool the pool to obtain reloaded events from
+	 * @param maxInMemory the maximum number of events to keep in memory
+	 * @param directory the directory to write run files to
+	 */
+	public SpillingHeap (java.util.List<Particle> particles, EventPool pool, int maxInMemory, File directory) {
+		if (maxInMemory < 2) {
+			throw new IllegalArgumentException("maxInMemory must be at least 2");
+		}
+		_particles = particles;
+		_pool = pool;
+		_maxInMemory = maxInMemory;
+		_directory = directory;
+		_memory = new HeapImpl<>();
+		_pinned = new HeapImpl<>();
+		_pending = new ArrayList<>();
+		_runs = new HeapImpl<>();
+	}
+
+	/**
+	 * Adds the specified event to the heap, spilling events to disk if the memory cap is exceeded.
+	 * The event itself may be spilled, so the caller should not use it afterwards.
+	 *
+	 * @param event the event to add
+	 */
+	public void add (Event event) {
+		if (event._p1 == null) {
+			_pinned.add(event);
+		} else if (_horizon == null || event.compareTo(_horizon) > 0) {
+			_memory.add(event);
+		} else {
+			_pending.add(event);
+		}
+
+		if (_memory.size() + _pending.size() > _maxInMemory) {
+			try {
+				if (_pending.size() >= _memory.size()) {
+					writeRun(_pending);
+					_pending.clear();
+				} else {
+					spillFarHalf();
+				}
+			} catch (IOException ioe) {
+				throw new UncheckedIOException(ioe);
+			}
+		}
+	}
+
+	/**
+	 * Removes and returns the event with the highest priority, reading spilled events back if needed.
+	 *
+	 * @return the top of the heap
+	 */
+	public Event removeFirst () {
+		if (_memory.size() == 0 && (_pending.size() > 0 || _numSpilled > 0)) {
+			try {
+				reload();
+			} catch (IOException ioe) {
+				throw new UncheckedIOException(ioe);
+			}
+		}
+
+		if (_pinned.size() == 0) {
+			return _memory.removeFirst();
+		}
+		if (_memory.size() == 0) {
+			return _pinned.removeFirst();
+		}
+		Event pinned = _pinned.removeFirst();
+		Event first = _memory.removeFirst();
+		if (pinned.compareTo(first) > 0) {
+			_memory.add(first);
+			return pinned;
+		}
+		_pinned.add(pinned);
+		return first;
+	}
+
+	/**
+	 * Returns the number of events in the heap, in memory and on disk.
+	 *
+	 * @return the number of events in the heap
+	 */
+	public int size () {
+		return _memory.size() + _pinned.size() + _pending.size() + _numSpilled;
+	}
+
+	/**
+	 * Returns the number of events currently held in memory.
+	 *
+	 * @return the number of events in memory
+	 */
+	public int sizeInMemory () {
+		return _memory.size() + _pinned.size() + _pending.size() + _runs.size();
+	}
+
+	/**
+	 * Returns the number of run files written so far.
+	 *
+	 * @return the number of run files written
+	 */
+	public int getNumRunFiles () {
+		return _numRunFiles;
+	}
+
+	/**
+	 * Deletes any run files that have not been read back yet.
+	 */
+	public void close () {
+		try {
+			while (_runs.size() > 0) {
+				Run run = _runs.removeFirst();
+				try {
+					run._in.close();
+				} finally {
+					run._file.delete();
+				}
+			}
+		} catch (IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		}
+		_numSpilled = 0;
+		_pending.clear();
+		_horizon = null;
+	}
+
+	/**
+	 * Moves the lower priority half of the in-memory events to a new run file.
+	 */
+	private void spillFarHalf () throws IOException {
+		int size = _memory.size();
+		ArrayList<Event> sorted = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			sorted.add(_memory.removeFirst());
+		}
+
+		HeapImpl<Event> kept = new HeapImpl<>();
+		for (int i = 0; i < size / 2; i++) {
+			kept.add(sorted.get(i));
+		}
+		_memory = kept;
+		writeRun(sorted.subList(size / 2, size));
+	}
+
+	/**
+	 * Sorts events by priority and writes them to a new run file.
+	 *
+	 * @param events the events to write, all with a lower priority than the in-memory events
+	 */
+	private void writeRun (java.util.List<Event> events) throws IOException {
+		if (events.isEmpty()) {
+			return;
+		}
+		events.sort(Collections.reverseOrder());
+
+		File file = File.createTempFile("events", ".run", _directory);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+			for (Event event : events) {
+				writeEvent(out, event);
+			}
+		} catch (IOException ioe) {
+			file.delete(); //Not tracked as a run yet, so close() would not remove it.
+			throw ioe;
+		}
+		int size = events.size();
+		_numRunFiles++;
+		_numSpilled += size;
+		_runs.add(new Run(file, size));
+		if (_runs.size() > MAX_RUNS) {
+			mergeRuns();
+		}
+		_horizon = peekRun()._head;
+	}
+
+	/**
+	 * Writes a single event to a run file.
+	 *
+	 * @param out the stream to write to
+	 * @param event the event to write
+	 */
+	private static void writeEvent (DataOutputStream out, Event event) throws IOException {
+		out.writeDouble(event._timeOfEvent);
+		out.writeDouble(event._timeEventCreated);
+		out.writeInt(event._p1._id);
+		out.writeInt(event._p2 == null ? -1 : event._p2._id);
+	}
+
+	/**
+	 * Merges the smaller half of the run files into a single one, to bound the number of open files.
+	 * Since only the smallest runs are merged, each spilled event is rewritten a logarithmic number of
+	 * times, rather than every time the runs are merged.
+	 */
+	private void mergeRuns () throws IOException {
+		ArrayList<Run> runs = new ArrayList<>(_runs.size());
+		while (_runs.size() > 0) {
+			runs.add(_runs.removeFirst());
+		}
+		runs.sort((r1, r2) -> Integer.compare(r1._remaining, r2._remaining));
+		HeapImpl<Run> smallest = new HeapImpl<>();
+		for (int i = 0; i < runs.size(); i++) {
+			if (i < runs.size() / 2) {
+				smallest.add(runs.get(i));
+			} else {
+				_runs.add(runs.get(i));
+			}
+		}
+
+		File file = File.createTempFile("events", ".run", _directory);
+		int size = 0;
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+			while (smallest.size() > 0) {
+				Event event = takeFromRuns(smallest);
+				writeEvent(out, event);
+				_pool.release(event); //Read back by this heap, so nobody else refers to it.
+				size++;
+			}
+		} catch (IOException ioe) {
+			file.delete();
+			throw ioe;
+		}
+		_numRunFiles++;
+		_runs.add(new Run(file, size));
+	}
+
+	/**
+	 * Reads the next batch of the highest priority spilled and pending events back into memory. The
+	 * pending events are merged with the runs here, rather than written to a run file of their own.
+	 */
+	private void reload () throws IOException {
+		_pending.sort(Collections.reverseOrder());
+		int numTaken = 0; //Number of pending events moved to memory, all from the front of _pending.
+
+		int batch = _maxInMemory / 2;
+		for (int i = 0; i < batch && (numTaken < _pending.size() || _runs.size() > 0); i++) {
+			if (_runs.size() == 0 || (numTaken < _pending.size() && _pending.get(numTaken).compareTo(peekRun()._head) > 0)) {
+				_memory.add(_pending.get(numTaken++));
+			} else {
+				_memory.add(takeFromRuns(_runs));
+				_numSpilled--;
+			}
+		}
+		_pending.subList(0, numTaken).clear();
+
+		Event runHead = _runs.size() == 0 ? null : peekRun()._head;
+		Event pendingHead = _pending.isEmpty() ? null : _pending.get(0);
+		if (pendingHead == null || (runHead != null && runHead.compareTo(pendingHead) > 0)) {
+			_horizon = runHead;
+		} else {
+			_horizon = pendingHead;
+		}
+	}
+
+	/**
+	 * Removes and returns the highest priority event across some runs.
+	 *
+	 * @param runs the runs, ordered by their next event
+	 * @return the event
+	 */
+	private Event takeFromRuns (HeapImpl<Run> runs) throws IOException {
+		Run run = runs.removeFirst();
+		Event event = run._head;
+		run.advance();
+		if (run._head != null) {
+			runs.add(run);
+		}
+		return event;
+	}
+
+	/**
+	 * Returns the run with the highest priority head without removing it.
+	 *
+	 * @return the run
+	 */
+	private Run peekRun () {
+		Run run = _runs.removeFirst();
+		_runs.add(run);
+		return run;
+	}
+}